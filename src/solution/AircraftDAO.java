@@ -4,7 +4,9 @@ import java.io.BufferedReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 
 import baseclasses.Aircraft;
 import baseclasses.Aircraft.Manufacturer;
@@ -13,12 +15,34 @@ import baseclasses.IAircraftDAO;
 
 /**
  * The AircraftDAO class is responsible for loading aircraft data from CSV files
- * and contains methods to help the system find aircraft when scheduling
+ * and contains methods to help the system find aircraft when scheduling.
  */
 public class AircraftDAO implements IAircraftDAO {
+	// The attributes that can be filtered on in queryAircraft()
+	public static final String TYPE = "type";
+	public static final String STARTING_POSITION = "startingPosition";
+	public static final String MANUFACTURER = "manufacturer";
+	public static final String SEATS = "seats";
 
 	// The data structure we'll use to store the aircraft we've loaded
-	private List<Aircraft> aircraft = new ArrayList<>();
+	private volatile List<Aircraft> aircraft = Collections.emptyList();
+	// A bitmap index over one snapshot of the aircraft, built when first queried
+	private volatile BitmapIndex<Aircraft> index;
+	// Which aircraft came from which file, so a changed file can be diffed
+	private SourceRecords<Aircraft> sources = new SourceRecords<Aircraft>() {
+		@Override
+		String keyOf(Aircraft a) {
+			return a.getTailCode();
+		}
+
+		@Override
+		boolean sameDetails(Aircraft a, Aircraft b) {
+			return Objects.equals(a.getModel(), b.getModel()) && Objects.equals(a.getTypeCode(), b.getTypeCode())
+					&& a.getManufacturer() == b.getManufacturer()
+					&& Objects.equals(a.getStartingPosition(), b.getStartingPosition())
+					&& a.getSeats() == b.getSeats() && a.getCabinCrewRequired() == b.getCabinCrewRequired();
+		}
+	};
 
 	/**
 	 * Loads the aircraft data from the specified file, adding them to the currently
@@ -33,10 +57,46 @@ public class AircraftDAO implements IAircraftDAO {
 	 *                              help you get started in reading the CSV file...
 	 */
 	@Override
-	public void loadAircraftData(Path p) throws DataLoadingException {
-		try {
-			// open the file
-			BufferedReader reader = Files.newBufferedReader(p);
+	public synchronized void loadAircraftData(Path p) throws DataLoadingException {
+		// build the new list off to the side, publishing it only once complete
+		List<Aircraft> loaded = new ArrayList<>(aircraft);
+		List<Aircraft> parsed = parseAircraftData(p);
+		loaded.addAll(parsed);
+		sources.loaded(p, parsed);
+		aircraft = Collections.unmodifiableList(loaded);
+	}
+
+	/**
+	 * Re-reads a file that was loaded before and applies only what changed in it:
+	 * new aircraft are added, aircraft no longer in the file are removed, and
+	 * aircraft whose details changed are replaced. Unchanged aircraft keep the
+	 * same Aircraft object, so anything keyed on them stays valid
+	 * 
+	 * @param p A Path pointing to the file to re-read
+	 * @return the number of aircraft added, removed or replaced
+	 * @throws DataLoadingException if the file cannot be read; the currently
+	 *                              loaded aircraft are then left untouched
+	 */
+	public synchronized int refreshAircraftData(Path p) throws DataLoadingException {
+		List<Aircraft> refreshed = new ArrayList<>();
+		int changes = sources.refresh(p, aircraft, parseAircraftData(p), refreshed);
+		if (changes > 0) {
+			aircraft = Collections.unmodifiableList(refreshed);
+		}
+		return changes;
+	}
+
+	/**
+	 * Reads every aircraft in the specified CSV file
+	 * 
+	 * @param p A Path pointing to the file from which data could be loaded
+	 * @return the aircraft in the file, in file order
+	 * @throws DataLoadingException if anything goes wrong
+	 */
+	private List<Aircraft> parseAircraftData(Path p) throws DataLoadingException {
+		List<Aircraft> loaded = new ArrayList<>();
+		// open the file
+		try (BufferedReader reader = Files.newBufferedReader(p)) {
 
 			// read the file line by line
 			String line = "";
@@ -70,19 +130,18 @@ public class AircraftDAO implements IAircraftDAO {
 				a.setCabinCrewRequired(crew);
 
 				// add the aircraft to our list
-				aircraft.add(a);
+				loaded.add(a);
 
 				System.out.println("Aircraft: " + tailcode + " is a " + type + " with " + seats + " seats.");
 
 			}
-			reader.close();
 		}
 
 		catch (Exception e) {
 			// There was a problem reading the file
 			throw new DataLoadingException(e);
 		}
-
+		return loaded;
 	}
 
 	/**
@@ -94,13 +153,7 @@ public class AircraftDAO implements IAircraftDAO {
 	 */
 	@Override
 	public List<Aircraft> findAircraftBySeats(int seats) {
-		List<Aircraft> aircraftsBySeats = new ArrayList<Aircraft>();
-		for (Aircraft a : aircraft) {
-			if (a.getSeats() >= seats) {
-				aircraftsBySeats.add(a);
-			}
-		}
-		return aircraftsBySeats;
+		return queryAircraft().atLeast(SEATS, seats).list();
 	}
 
 	/**
@@ -113,13 +166,7 @@ public class AircraftDAO implements IAircraftDAO {
 	 */
 	@Override
 	public List<Aircraft> findAircraftByStartingPosition(String startingPosition) {
-		List<Aircraft> aircraftsByStartingPosition = new ArrayList<Aircraft>();
-		for (Aircraft a : aircraft) {
-			if (a.getStartingPosition().equals(startingPosition)) {
-				aircraftsByStartingPosition.add(a);
-			}
-		}
-		return aircraftsByStartingPosition;
+		return queryAircraft().where(STARTING_POSITION, startingPosition).list();
 	}
 
 	/**
@@ -147,13 +194,32 @@ public class AircraftDAO implements IAircraftDAO {
 	 */
 	@Override
 	public List<Aircraft> findAircraftByType(String typeCode) {
-		List<Aircraft> aircraftsByType = new ArrayList<Aircraft>();
-		for (Aircraft a : aircraft) {
-			if (a.getTypeCode().equals(typeCode)) {
-				aircraftsByType.add(a);
+		return queryAircraft().where(TYPE, typeCode).list();
+	}
+
+	/**
+	 * Starts a query over the currently loaded aircraft that can combine any
+	 * filters on TYPE, STARTING_POSITION, MANUFACTURER and a minimum number of
+	 * SEATS, e.g. queryAircraft().where(TYPE, "A320").atLeast(SEATS, 150).list()
+	 * 
+	 * @return a query matching every currently loaded aircraft
+	 */
+	public BitmapIndex<Aircraft>.Query queryAircraft() {
+		List<Aircraft> snapshot = aircraft;
+		BitmapIndex<Aircraft> current = index;
+		if (current == null || current.getRecords() != snapshot) {
+			current = new BitmapIndex<>(snapshot);
+			for (int i = 0; i < snapshot.size(); i++) {
+				Aircraft a = snapshot.get(i);
+				current.add(TYPE, i, a.getTypeCode());
+				current.add(STARTING_POSITION, i, a.getStartingPosition());
+				current.add(MANUFACTURER, i, a.getManufacturer());
+				current.addNumber(SEATS, i, a.getSeats());
 			}
+			current.buildRanges();
+			index = current;
 		}
-		return aircraftsByType;
+		return current.query();
 	}
 
 	/**
@@ -181,8 +247,9 @@ public class AircraftDAO implements IAircraftDAO {
 	 * Unloads all of the aircraft currently loaded, ready to start again if needed
 	 */
 	@Override
-	public void reset() {
-		aircraft.clear();
+	public synchronized void reset() {
+		aircraft = Collections.emptyList();
+		sources.reset();
 
 	}
 
@@ -0,0 +1,290 @@
+package solution;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import baseclasses.Aircraft;
+import baseclasses.CabinCrew;
+import baseclasses.Crew;
+import baseclasses.FlightInfo;
+import baseclasses.IAircraftDAO;
+import baseclasses.ICrewDAO;
+import baseclasses.IRouteDAO;
+import baseclasses.Pilot;
+import baseclasses.Schedule;
+
+/**
+ * AllocationFile writes the completed allocations of a schedule to a small text
+ * file, and rebuilds a schedule from such a file. Aircraft are referred to by
+ * tail code and crew by name, so the file only makes sense next to the same
+ * data it was produced from; the header at the top of the file records which
+ * data that was, and which run and dates the schedule belongs to.
+ * 
+ * The format is a header of "hash", "run", "dates" and "score" lines followed
+ * by one line per flight: flight number, date, tail code, captain, first
+ * officer and the cabin crew separated by ';'. The ScheduleWriter's CSV uses
+ * the same flight lines, and both ways of reading a schedule back allocate
+ * through allocate()
+ */
+class AllocationFile {
+
+	/**
+	 * The header of an allocation file
+	 */
+	static class Header {
+		final String datasetHash;
+		final String runId;
+		final LocalDate start;
+		final LocalDate end;
+		final long score;
+
+		Header(String datasetHash, String runId, LocalDate start, LocalDate end, long score) {
+			this.datasetHash = datasetHash;
+			this.runId = runId;
+			this.start = start;
+			this.end = end;
+			this.score = score;
+		}
+
+		/**
+		 * Checks whether the file belongs to the given run over the given data and
+		 * dates, and so can be read back by it
+		 * 
+		 * @param datasetHash the hash of the data being scheduled
+		 * @param runId       the run being carried out
+		 * @param start       the first date being scheduled
+		 * @param end         the last date being scheduled
+		 * @return true if the file was written by the same run
+		 */
+		boolean belongsTo(String datasetHash, String runId, LocalDate start, LocalDate end) {
+			return this.datasetHash.equals(datasetHash) && this.runId.equals(runId) && this.start.equals(start)
+					&& this.end.equals(end);
+		}
+	}
+
+	private AllocationFile() {
+	}
+
+	/**
+	 * Writes the completed allocations of a schedule. The file is written under a
+	 * temporary name and then moved into place, so readers never see it half
+	 * written
+	 * 
+	 * @param p        the file to write
+	 * @param header   the data, run, dates and score the schedule belongs to
+	 * @param schedule the schedule to write
+	 * @throws IOException if the file cannot be written
+	 */
+	static void write(Path p, Header header, Schedule schedule) throws IOException {
+		Path temporary = p.resolveSibling(p.getFileName() + ".tmp");
+		BufferedWriter writer = Files.newBufferedWriter(temporary);
+		try {
+			writer.write("hash," + header.datasetHash);
+			writer.newLine();
+			writer.write("run," + header.runId);
+			writer.newLine();
+			writer.write("dates," + header.start + "," + header.end);
+			writer.newLine();
+			writer.write("score," + header.score);
+			writer.newLine();
+			StringBuilder line = new StringBuilder();
+			for (FlightInfo flight : schedule.getCompletedAllocations()) {
+				line.setLength(0);
+				appendAllocation(line, schedule, flight);
+				writer.write(line.toString());
+				writer.newLine();
+			}
+		} finally {
+			writer.close();
+		}
+		Files.move(temporary, p, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Reads just the header of an allocation file
+	 * 
+	 * @param p the file to read
+	 * @return the file's header
+	 * @throws IOException if the file cannot be read or has no header
+	 */
+	static Header readHeader(Path p) throws IOException {
+		BufferedReader reader = Files.newBufferedReader(p);
+		try {
+			return readHeader(p, reader);
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static Header readHeader(Path p, BufferedReader reader) throws IOException {
+		String hash = reader.readLine();
+		String run = reader.readLine();
+		String dates = reader.readLine();
+		String score = reader.readLine();
+		if (hash == null || run == null || dates == null || score == null || !hash.startsWith("hash,")
+				|| !run.startsWith("run,") || !dates.startsWith("dates,") || !score.startsWith("score,")) {
+			throw new IOException("No header in " + p);
+		}
+		try {
+			String[] range = dates.split(",");
+			return new Header(hash.substring(5), run.substring(4), LocalDate.parse(range[1]),
+					LocalDate.parse(range[2]), Long.parseLong(score.substring(6)));
+		} catch (RuntimeException e) {
+			throw new IOException("Malformed header in " + p, e);
+		}
+	}
+
+	/**
+	 * Rebuilds a schedule from an allocation file
+	 * 
+	 * @param p        the file to read
+	 * @param aircraft the aircraft the file's tail codes refer to
+	 * @param crew     the crew the file's names refer to
+	 * @param routes   the routes to schedule
+	 * @param start    the first date of the schedule
+	 * @param end      the last date of the schedule
+	 * @return the rebuilt schedule
+	 * @throws IOException if the file cannot be read, or does not fit the data
+	 */
+	static Schedule read(Path p, IAircraftDAO aircraft, ICrewDAO crew, IRouteDAO routes, LocalDate start,
+			LocalDate end) throws IOException {
+		Schedule schedule = new Schedule(routes, start, end);
+		HashMap<String, FlightInfo> flights = flightsOf(schedule);
+		HashMap<String, Crew> crewByName = new HashMap<>();
+		for (Crew c : crew.getAllCrew()) {
+			crewByName.put(nameOf(c), c);
+		}
+
+		BufferedReader reader = Files.newBufferedReader(p);
+		try {
+			readHeader(p, reader);
+			String line = "";
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.split(",", -1);
+				FlightInfo flight = flights.get(fields[0] + "," + fields[1]);
+				Aircraft a = aircraft.findAircraftByTailCode(fields[2]);
+				if (flight == null || a == null) {
+					throw new IOException("Unknown flight or aircraft in " + p + ": " + line);
+				}
+				List<CabinCrew> cabinCrew = new ArrayList<>();
+				if (!fields[5].isEmpty()) {
+					for (String name : fields[5].split(";")) {
+						Crew c = crewByName.get(name);
+						cabinCrew.add(c instanceof CabinCrew ? (CabinCrew) c : null);
+					}
+				}
+				if (!allocate(schedule, flight, a, pilotNamed(crewByName, fields[3]),
+						pilotNamed(crewByName, fields[4]), cabinCrew)) {
+					throw new IOException("Allocation in " + p + " does not fit the data: " + line);
+				}
+			}
+		} catch (RuntimeException e) {
+			throw new IOException("Malformed allocation in " + p, e);
+		} finally {
+			reader.close();
+		}
+		return schedule;
+	}
+
+	/**
+	 * Indexes the flights still to be allocated in a schedule by flight number
+	 * and date, as they appear in allocation lines
+	 * 
+	 * @param schedule a schedule
+	 * @return the schedule's remaining flights, keyed by keyOf()
+	 */
+	static HashMap<String, FlightInfo> flightsOf(Schedule schedule) {
+		HashMap<String, FlightInfo> flights = new HashMap<>();
+		for (FlightInfo flight : schedule.getRemainingAllocations()) {
+			flights.put(keyOf(flight.getFlight().getFlightNumber(), flight.getDepartureDateTime().toLocalDate()),
+					flight);
+		}
+		return flights;
+	}
+
+	static String keyOf(int flightNumber, LocalDate date) {
+		return flightNumber + "," + date;
+	}
+
+	/**
+	 * Appends the allocation line of one completed flight: flight number, date,
+	 * tail code, captain, first officer and the cabin crew separated by ';'
+	 * 
+	 * @param line     the line to append to
+	 * @param schedule the schedule the flight belongs to
+	 * @param flight   a completed flight
+	 */
+	static void appendAllocation(StringBuilder line, Schedule schedule, FlightInfo flight) {
+		line.append(flight.getFlight().getFlightNumber()).append(',');
+		line.append(flight.getDepartureDateTime().toLocalDate()).append(',');
+		line.append(schedule.getAircraftFor(flight).getTailCode()).append(',');
+		line.append(nameOf(schedule.getCaptainOf(flight))).append(',');
+		line.append(nameOf(schedule.getFirstOfficerOf(flight))).append(',');
+		List<CabinCrew> cabinCrew = schedule.getCabinCrewOf(flight);
+		for (int i = 0; i < cabinCrew.size(); i++) {
+			line.append(i == 0 ? "" : ";").append(nameOf(cabinCrew.get(i)));
+		}
+	}
+
+	/**
+	 * Allocates a stored allocation to a flight, checking first that every part
+	 * of it is known and free, so a flight that does not fit is left untouched
+	 * rather than half allocated
+	 * 
+	 * @param schedule     the schedule being rebuilt
+	 * @param flight       the flight to allocate
+	 * @param aircraft     the stored aircraft
+	 * @param captain      the stored captain
+	 * @param firstOfficer the stored first officer
+	 * @param cabinCrew    the stored cabin crew
+	 * @return true if the flight was allocated and completed
+	 */
+	static boolean allocate(Schedule schedule, FlightInfo flight, Aircraft aircraft, Pilot captain,
+			Pilot firstOfficer, List<CabinCrew> cabinCrew) {
+		if (aircraft == null || captain == null || firstOfficer == null || captain == firstOfficer
+				|| cabinCrew.contains(null) || new HashSet<CabinCrew>(cabinCrew).size() != cabinCrew.size()) {
+			return false;
+		}
+		if (schedule.hasConflict(aircraft, flight) || schedule.hasConflict(captain, flight)
+				|| schedule.hasConflict(firstOfficer, flight)) {
+			return false;
+		}
+		for (CabinCrew c : cabinCrew) {
+			if (schedule.hasConflict(c, flight)) {
+				return false;
+			}
+		}
+
+		// everything is free, so these only fail if the schedule disagrees
+		try {
+			schedule.allocateAircraftTo(aircraft, flight);
+			schedule.allocateCaptainTo(captain, flight);
+			schedule.allocateFirstOfficerTo(firstOfficer, flight);
+			for (CabinCrew c : cabinCrew) {
+				schedule.allocateCabinCrewTo(c, flight);
+			}
+			schedule.completeAllocationFor(flight);
+			return true;
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	private static Pilot pilotNamed(HashMap<String, Crew> crewByName, String name) {
+		Crew c = crewByName.get(name);
+		return c instanceof Pilot ? (Pilot) c : null;
+	}
+
+	static String nameOf(Crew c) {
+		return c.getForename() + " " + c.getSurname();
+	}
+}
@@ -0,0 +1,273 @@
+package solution;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import baseclasses.DataLoadingException;
+import baseclasses.IAircraftDAO;
+import baseclasses.ICrewDAO;
+import baseclasses.IPassengerNumbersDAO;
+import baseclasses.IRouteDAO;
+import baseclasses.Schedule;
+
+/**
+ * The BatchScheduler runs many what-if scheduling scenarios at once. The data
+ * files are loaded a single time and shared, read-only, by every scenario; each
+ * scenario gets its own Scheduler on a fixed-size pool of worker threads, and
+ * finished scenarios are handed back through a result queue
+ */
+public class BatchScheduler {
+
+	/**
+	 * A single what-if scenario: the date range to schedule, the seed and time
+	 * budget of the search, and optionally a different fleet to schedule with
+	 */
+	public static class Scenario {
+		private final String name;
+		private final LocalDate start;
+		private final LocalDate end;
+		private final long seed;
+		private final long timeBudget;
+		private final IAircraftDAO fleet;
+
+		/**
+		 * Creates a scenario that uses the shared fleet
+		 * 
+		 * @param name       a name to recognise the scenario's result by
+		 * @param start      the first date to schedule
+		 * @param end        the last date to schedule
+		 * @param seed       the seed for the scheduler's random choices
+		 * @param timeBudget how long to search for, in milliseconds
+		 */
+		public Scenario(String name, LocalDate start, LocalDate end, long seed, long timeBudget) {
+			this(name, start, end, seed, timeBudget, null);
+		}
+
+		/**
+		 * Creates a scenario that schedules with its own fleet
+		 * 
+		 * @param name       a name to recognise the scenario's result by
+		 * @param start      the first date to schedule
+		 * @param end        the last date to schedule
+		 * @param seed       the seed for the scheduler's random choices
+		 * @param timeBudget how long to search for, in milliseconds
+		 * @param fleet      the aircraft to schedule with, or null for the shared
+		 *                   fleet
+		 */
+		public Scenario(String name, LocalDate start, LocalDate end, long seed, long timeBudget,
+				IAircraftDAO fleet) {
+			this.name = name;
+			this.start = start;
+			this.end = end;
+			this.seed = seed;
+			this.timeBudget = timeBudget;
+			this.fleet = fleet;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public LocalDate getStart() {
+			return start;
+		}
+
+		public LocalDate getEnd() {
+			return end;
+		}
+
+		public long getSeed() {
+			return seed;
+		}
+
+		public long getTimeBudget() {
+			return timeBudget;
+		}
+
+		public IAircraftDAO getFleet() {
+			return fleet;
+		}
+	}
+
+	/**
+	 * The outcome of a scenario: either the best schedule found, or the error that
+	 * stopped the scenario
+	 */
+	public static class Result {
+		private final Scenario scenario;
+		private final Schedule schedule;
+		private final Exception error;
+
+		Result(Scenario scenario, Schedule schedule, Exception error) {
+			this.scenario = scenario;
+			this.schedule = schedule;
+			this.error = error;
+		}
+
+		public Scenario getScenario() {
+			return scenario;
+		}
+
+		/**
+		 * Returns the best schedule found for the scenario
+		 * 
+		 * @return the best schedule found, or null if the scenario failed
+		 */
+		public Schedule getSchedule() {
+			return schedule;
+		}
+
+		/**
+		 * Returns the reason the scenario failed
+		 * 
+		 * @return the exception thrown by the scenario, or null if it succeeded
+		 */
+		public Exception getError() {
+			return error;
+		}
+	}
+
+	private final IAircraftDAO aircraft;
+	private final ICrewDAO crew;
+	private final IRouteDAO routes;
+	private final IPassengerNumbersDAO passengerNumbers;
+	private final ThreadPoolExecutor executor;
+	private final BlockingQueue<Result> results = new LinkedBlockingQueue<Result>();
+
+	/**
+	 * Creates a batch scheduler over data that has already been loaded. The DAOs
+	 * are only read from; if one is reloaded while scenarios are running, each
+	 * lookup sees it either entirely before or entirely after the reload
+	 * 
+	 * @param aircraft         the shared fleet
+	 * @param crew             the shared crew
+	 * @param routes           the shared routes
+	 * @param passengerNumbers the shared passenger forecasts
+	 * @param threads          the number of scenarios to run at the same time
+	 * @param queueSize        the number of scenarios that may wait for a thread;
+	 *                         submitting beyond this waits for room in the queue
+	 */
+	public BatchScheduler(IAircraftDAO aircraft, ICrewDAO crew, IRouteDAO routes,
+			IPassengerNumbersDAO passengerNumbers, int threads, int queueSize) {
+		this.aircraft = aircraft;
+		this.crew = crew;
+		this.routes = routes;
+		this.passengerNumbers = passengerNumbers;
+		this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(queueSize), new RejectedExecutionHandler() {
+					@Override
+					public void rejectedExecution(Runnable task, ThreadPoolExecutor pool) {
+						// wait for room rather than running the scenario on the submitting thread
+						if (pool.isShutdown()) {
+							throw new RejectedExecutionException("The batch scheduler has been shut down");
+						}
+						try {
+							pool.getQueue().put(task);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							throw new RejectedExecutionException("Interrupted while waiting to queue a scenario", e);
+						}
+					}
+				});
+	}
+
+	/**
+	 * Loads the four data files once and creates a batch scheduler over them
+	 * 
+	 * @param aircraftFile         the aircraft CSV file
+	 * @param crewFile             the crew JSON file
+	 * @param routeFile            the route XML file
+	 * @param passengerNumbersFile the passenger numbers SQLite database
+	 * @param threads              the number of scenarios to run at the same time
+	 * @param queueSize            the number of scenarios that may wait for a
+	 *                             thread
+	 * @return a batch scheduler sharing the loaded data between its scenarios
+	 * @throws DataLoadingException if any of the files cannot be loaded
+	 */
+	public static BatchScheduler load(Path aircraftFile, Path crewFile, Path routeFile, Path passengerNumbersFile,
+			int threads, int queueSize) throws DataLoadingException {
+		IAircraftDAO aircraft = new AircraftDAO();
+		aircraft.loadAircraftData(aircraftFile);
+		ICrewDAO crew = new CrewDAO();
+		crew.loadCrewData(crewFile);
+		IRouteDAO routes = new RouteDAO();
+		routes.loadRouteData(routeFile);
+		IPassengerNumbersDAO passengerNumbers = new PassengerNumbersDAO();
+		passengerNumbers.loadPassengerNumbersData(passengerNumbersFile);
+		return new BatchScheduler(aircraft, crew, routes, passengerNumbers, threads, queueSize);
+	}
+
+	/**
+	 * Queues a scenario to be scheduled, waiting while the queue is full. Its
+	 * result will appear on the result queue once its time budget has run out
+	 * 
+	 * @param scenario the scenario to schedule
+	 * @throws RejectedExecutionException if the batch scheduler has been shut
+	 *                                    down, or the wait is interrupted
+	 */
+	public void submit(final Scenario scenario) {
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Scheduler scheduler = new Scheduler();
+					scheduler.setSeed(scenario.getSeed());
+					scheduler.setTimeBudget(scenario.getTimeBudget());
+					scheduler.setVerbose(false);
+					IAircraftDAO fleet = scenario.getFleet() != null ? scenario.getFleet() : aircraft;
+					Schedule schedule = scheduler.generateSchedule(fleet, crew, routes, passengerNumbers,
+							scenario.getStart(), scenario.getEnd());
+					results.add(new Result(scenario, schedule, null));
+				} catch (Exception e) {
+					results.add(new Result(scenario, null, e));
+				}
+			}
+		});
+	}
+
+	/**
+	 * Waits for the next scenario to finish, in order of completion
+	 * 
+	 * @return the result of the next scenario to finish
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public Result takeResult() throws InterruptedException {
+		return results.take();
+	}
+
+	/**
+	 * Returns the result of a finished scenario without waiting
+	 * 
+	 * @return the result of a finished scenario, or null if none is ready
+	 */
+	public Result pollResult() {
+		return results.poll();
+	}
+
+	/**
+	 * Stops accepting scenarios; those already submitted still run to completion
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * Waits for every submitted scenario to finish after shutdown()
+	 * 
+	 * @param timeout the longest time to wait
+	 * @param unit    the unit of the timeout
+	 * @return true if all scenarios finished, false if the timeout ran out first
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return executor.awaitTermination(timeout, unit);
+	}
+
+}
@@ -0,0 +1,167 @@
+package solution;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A BitmapIndex answers queries combining any number of attribute filters over
+ * a fixed list of records. It holds one bitset per attribute value, with bit i
+ * set when record i has that value; a query starts with every record and ANDs
+ * in the bitset of each filter, then creates results only for the bits left.
+ * Numeric attributes can also be filtered by a minimum value.
+ * 
+ * An index is built once for an immutable list of records, by the DAO that
+ * owns the list, and never changes afterwards
+ *
+ * @param <T> the type of record indexed
+ */
+public class BitmapIndex<T> {
+	private final List<T> records;
+	private final HashMap<String, HashMap<Object, BitSet>> bitmaps = new HashMap<>();
+	private final HashMap<String, TreeMap<Integer, BitSet>> atLeast = new HashMap<>();
+
+	BitmapIndex(List<T> records) {
+		this.records = records;
+	}
+
+	/**
+	 * Records that a record has a value for an attribute. A record may have
+	 * several values for the same attribute, such as several type ratings
+	 */
+	void add(String attribute, int record, Object value) {
+		HashMap<Object, BitSet> values = bitmaps.get(attribute);
+		if (values == null) {
+			values = new HashMap<>();
+			bitmaps.put(attribute, values);
+		}
+		BitSet bits = values.get(value);
+		if (bits == null) {
+			bits = new BitSet(records.size());
+			values.put(value, bits);
+		}
+		bits.set(record);
+	}
+
+	/**
+	 * Records the value of a numeric attribute for a record. Once every record has
+	 * been added, buildRanges() must be called before querying
+	 */
+	void addNumber(String attribute, int record, int value) {
+		TreeMap<Integer, BitSet> values = atLeast.get(attribute);
+		if (values == null) {
+			values = new TreeMap<>();
+			atLeast.put(attribute, values);
+		}
+		BitSet bits = values.get(value);
+		if (bits == null) {
+			bits = new BitSet(records.size());
+			values.put(value, bits);
+		}
+		bits.set(record);
+	}
+
+	/**
+	 * Turns the per-value bitsets of every numeric attribute into "at least this
+	 * value" bitsets
+	 */
+	void buildRanges() {
+		for (TreeMap<Integer, BitSet> values : atLeast.values()) {
+			BitSet cumulative = new BitSet(records.size());
+			for (Map.Entry<Integer, BitSet> entry : values.descendingMap().entrySet()) {
+				cumulative.or(entry.getValue());
+				entry.getValue().or(cumulative);
+			}
+		}
+	}
+
+	/**
+	 * Returns the records this index was built over
+	 * 
+	 * @return the indexed records
+	 */
+	public List<T> getRecords() {
+		return records;
+	}
+
+	/**
+	 * Starts a query matching every record
+	 * 
+	 * @return a new query
+	 */
+	public Query query() {
+		return new Query();
+	}
+
+	/**
+	 * A conjunction of filters over the index's records
+	 */
+	public class Query {
+		private final BitSet matches = new BitSet(records.size());
+
+		private Query() {
+			matches.set(0, records.size());
+		}
+
+		/**
+		 * Keeps only the records having the given value for an attribute
+		 * 
+		 * @param attribute the attribute to filter on
+		 * @param value     the value the attribute must have
+		 * @return this query
+		 */
+		public Query where(String attribute, Object value) {
+			HashMap<Object, BitSet> values = bitmaps.get(attribute);
+			BitSet bits = values == null ? null : values.get(value);
+			if (bits == null) {
+				matches.clear();
+			} else {
+				matches.and(bits);
+			}
+			return this;
+		}
+
+		/**
+		 * Keeps only the records whose numeric attribute is at least a minimum
+		 * 
+		 * @param attribute the numeric attribute to filter on
+		 * @param minimum   the smallest value allowed
+		 * @return this query
+		 */
+		public Query atLeast(String attribute, int minimum) {
+			TreeMap<Integer, BitSet> values = atLeast.get(attribute);
+			Map.Entry<Integer, BitSet> bits = values == null ? null : values.ceilingEntry(minimum);
+			if (bits == null) {
+				matches.clear();
+			} else {
+				matches.and(bits.getValue());
+			}
+			return this;
+		}
+
+		/**
+		 * Returns the number of records matching every filter
+		 * 
+		 * @return the number of matching records
+		 */
+		public int count() {
+			return matches.cardinality();
+		}
+
+		/**
+		 * Returns the records matching every filter, in load order
+		 * 
+		 * @return the matching records
+		 */
+		public List<T> list() {
+			List<T> results = new ArrayList<>(matches.cardinality());
+			for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+				results.add(records.get(i));
+			}
+			return results;
+		}
+	}
+}
@@ -5,7 +5,9 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
@@ -18,13 +20,60 @@ import baseclasses.Pilot;
 /**
  * The CrewDAO is responsible for loading data from JSON-based crew files It
  * contains various methods to help the scheduler find the right pilots and
- * cabin crew
+ * cabin crew.
+ * 
+ * Pilots and cabin crew are published together in one snapshot, so readers
+ * never see pilots from one load with cabin crew from another
  */
 public class CrewDAO implements ICrewDAO {
+	// The attributes that can be filtered on in queryPilots() and queryCabinCrew()
+	public static final String HOME_BASE = "homeBase";
+	public static final String TYPE_RATING = "typeRating";
+	public static final String RANK = "rank";
 
-	// The data structure we'll use to store the aircraft we've loaded
-	private List<CabinCrew> cabinCrew = new ArrayList<>();
-	private List<Pilot> pilots = new ArrayList<>();
+	/**
+	 * An immutable view of all the crew loaded at one point in time
+	 */
+	private static class CrewSnapshot {
+		private final List<Pilot> pilots;
+		private final List<CabinCrew> cabinCrew;
+
+		CrewSnapshot(List<Pilot> pilots, List<CabinCrew> cabinCrew) {
+			this.pilots = Collections.unmodifiableList(pilots);
+			this.cabinCrew = Collections.unmodifiableList(cabinCrew);
+		}
+	}
+
+	// The data structure we'll use to store the crew we've loaded
+	private volatile CrewSnapshot crew = new CrewSnapshot(new ArrayList<Pilot>(), new ArrayList<CabinCrew>());
+	// Bitmap indexes over one snapshot of the crew, built when first queried
+	private volatile BitmapIndex<Pilot> pilotIndex;
+	private volatile BitmapIndex<CabinCrew> cabinCrewIndex;
+	// Which crew came from which file, so a changed file can be diffed
+	private SourceRecords<Pilot> pilotSources = new SourceRecords<Pilot>() {
+		@Override
+		String keyOf(Pilot p) {
+			return p.getForename() + " " + p.getSurname();
+		}
+
+		@Override
+		boolean sameDetails(Pilot a, Pilot b) {
+			return Objects.equals(a.getHomeBase(), b.getHomeBase()) && a.getRank() == b.getRank()
+					&& Objects.equals(a.getTypeRatings(), b.getTypeRatings());
+		}
+	};
+	private SourceRecords<CabinCrew> cabinCrewSources = new SourceRecords<CabinCrew>() {
+		@Override
+		String keyOf(CabinCrew c) {
+			return c.getForename() + " " + c.getSurname();
+		}
+
+		@Override
+		boolean sameDetails(CabinCrew a, CabinCrew b) {
+			return Objects.equals(a.getHomeBase(), b.getHomeBase())
+					&& Objects.equals(a.getTypeRatings(), b.getTypeRatings());
+		}
+	};
 
 	/**
 	 * Loads the crew data from the specified file, adding them to the currently
@@ -36,10 +85,54 @@ public class CrewDAO implements ICrewDAO {
 	 *                              indicates the underlying exception
 	 */
 	@Override
-	public void loadCrewData(Path p) throws DataLoadingException {
-		try {
-			// open a file
-			BufferedReader br = Files.newBufferedReader(p);
+	public synchronized void loadCrewData(Path p) throws DataLoadingException {
+		// build the new snapshot off to the side, publishing it only once complete
+		List<Pilot> pilots = new ArrayList<>(crew.pilots);
+		List<CabinCrew> cabinCrew = new ArrayList<>(crew.cabinCrew);
+		CrewSnapshot parsed = parseCrewData(p);
+		pilots.addAll(parsed.pilots);
+		cabinCrew.addAll(parsed.cabinCrew);
+		pilotSources.loaded(p, parsed.pilots);
+		cabinCrewSources.loaded(p, parsed.cabinCrew);
+		crew = new CrewSnapshot(pilots, cabinCrew);
+	}
+
+	/**
+	 * Re-reads a file that was loaded before and applies only what changed in it:
+	 * new crew are added, crew no longer in the file are removed, and crew whose
+	 * details changed are replaced. Unchanged crew keep the same objects, so
+	 * anything keyed on them stays valid
+	 * 
+	 * @param p A Path pointing to the file to re-read
+	 * @return the number of crew added, removed or replaced
+	 * @throws DataLoadingException if the file cannot be read; the currently
+	 *                              loaded crew are then left untouched
+	 */
+	public synchronized int refreshCrewData(Path p) throws DataLoadingException {
+		CrewSnapshot current = crew;
+		CrewSnapshot parsed = parseCrewData(p);
+		List<Pilot> pilots = new ArrayList<>();
+		List<CabinCrew> cabinCrew = new ArrayList<>();
+		int changes = pilotSources.refresh(p, current.pilots, parsed.pilots, pilots);
+		changes += cabinCrewSources.refresh(p, current.cabinCrew, parsed.cabinCrew, cabinCrew);
+		if (changes > 0) {
+			crew = new CrewSnapshot(pilots, cabinCrew);
+		}
+		return changes;
+	}
+
+	/**
+	 * Reads every pilot and cabin crew member in the specified JSON file
+	 * 
+	 * @param p A Path pointing to the file from which data could be loaded
+	 * @return the crew in the file, in file order
+	 * @throws DataLoadingException if anything goes wrong
+	 */
+	private CrewSnapshot parseCrewData(Path p) throws DataLoadingException {
+		List<Pilot> pilots = new ArrayList<>();
+		List<CabinCrew> cabinCrew = new ArrayList<>();
+		// open a file
+		try (BufferedReader br = Files.newBufferedReader(p)) {
 			String json = "";
 			String line = "";
 			while ((line = br.readLine()) != null) {
@@ -63,16 +156,16 @@ public class CrewDAO implements ICrewDAO {
 
 			JSONArray cabinCrewArray = root.getJSONArray("cabincrew");
 			for (int j = 0; j < cabinCrewArray.length(); j++) {
-				CabinCrew crew = new CabinCrew();
+				CabinCrew singleCabinCrew = new CabinCrew();
 				JSONObject cabinCrewObject = cabinCrewArray.getJSONObject(j);
-				crew.setForename(cabinCrewObject.getString("forename"));
-				crew.setSurname(cabinCrewObject.getString("surname"));
-				crew.setHomeBase(cabinCrewObject.getString("home_airport"));
+				singleCabinCrew.setForename(cabinCrewObject.getString("forename"));
+				singleCabinCrew.setSurname(cabinCrewObject.getString("surname"));
+				singleCabinCrew.setHomeBase(cabinCrewObject.getString("home_airport"));
 				JSONArray type = cabinCrewObject.getJSONArray("type_ratings");
 				for (int t = 0; t < type.length(); t++) {
-					crew.setQualifiedFor(type.getString(t));
+					singleCabinCrew.setQualifiedFor(type.getString(t));
 				}
-				cabinCrew.add(crew);
+				cabinCrew.add(singleCabinCrew);
 
 			}
 
@@ -80,7 +173,7 @@ public class CrewDAO implements ICrewDAO {
 			
 			throw new DataLoadingException(e);
 		}
-
+		return new CrewSnapshot(pilots, cabinCrew);
 	}
 
 	/**
@@ -93,13 +186,7 @@ public class CrewDAO implements ICrewDAO {
 	 */
 	@Override
 	public List<CabinCrew> findCabinCrewByHomeBase(String airportCode) {
-		List<CabinCrew> cabinCrewByHomeBase = new ArrayList<CabinCrew>();
-		for (CabinCrew c : cabinCrew) {
-			if (c.getHomeBase().equals(airportCode)) {
-				cabinCrewByHomeBase.add(c);
-			}
-		}
-		return cabinCrewByHomeBase;
+		return queryCabinCrew().where(HOME_BASE, airportCode).list();
 	}
 
 	/**
@@ -113,17 +200,7 @@ public class CrewDAO implements ICrewDAO {
 	 */
 	@Override
 	public List<CabinCrew> findCabinCrewByHomeBaseAndTypeRating(String typeCode, String airportCode) {
-		List<CabinCrew> cabinCrewByHomeBaseAndTypeRating = new ArrayList<>();
-		for (CabinCrew cc : cabinCrew) {
-			if (cc.getHomeBase().equals(airportCode)) {
-				for (String s : cc.getTypeRatings()) {
-					if (s.equals(typeCode)) {
-						cabinCrewByHomeBaseAndTypeRating.add(cc);
-					}
-				}
-			}
-		}
-		return cabinCrewByHomeBaseAndTypeRating;
+		return queryCabinCrew().where(HOME_BASE, airportCode).where(TYPE_RATING, typeCode).list();
 	}
 
 	/**
@@ -136,15 +213,7 @@ public class CrewDAO implements ICrewDAO {
 	 */
 	@Override
 	public List<CabinCrew> findCabinCrewByTypeRating(String typeCode) {
-		List<CabinCrew> cabinCrewByTypeRating = new ArrayList<>();
-		for (CabinCrew cc : cabinCrew) {
-			for (String s : cc.getTypeRatings()) {
-				if (s.equals(typeCode)) {
-					cabinCrewByTypeRating.add(cc);
-				}
-			}
-		}
-		return cabinCrewByTypeRating;
+		return queryCabinCrew().where(TYPE_RATING, typeCode).list();
 	}
 
 	/**
@@ -157,13 +226,7 @@ public class CrewDAO implements ICrewDAO {
 	 */
 	@Override
 	public List<Pilot> findPilotsByHomeBase(String airportCode) {
-		List<Pilot> pilotsByHomeBase = new ArrayList<>();
-		for (Pilot p : pilots) {
-			if (p.getHomeBase().equals(airportCode)) {
-				pilotsByHomeBase.add(p);
-			}
-		}
-		return pilotsByHomeBase;
+		return queryPilots().where(HOME_BASE, airportCode).list();
 	}
 
 	/**
@@ -177,17 +240,56 @@ public class CrewDAO implements ICrewDAO {
 	 */
 	@Override
 	public List<Pilot> findPilotsByHomeBaseAndTypeRating(String typeCode, String airportCode) {
-		List<Pilot> pilotsByHomeBaseAndTypeRating = new ArrayList<>();
-		for (Pilot p : pilots) {
-			if (p.getHomeBase().equals(airportCode)) {
+		return queryPilots().where(HOME_BASE, airportCode).where(TYPE_RATING, typeCode).list();
+	}
+
+	/**
+	 * Starts a query over the currently loaded pilots that can combine any filters
+	 * on HOME_BASE, TYPE_RATING and RANK, e.g.
+	 * queryPilots().where(RANK, Pilot.Rank.CAPTAIN).where(TYPE_RATING,
+	 * "A320").list()
+	 * 
+	 * @return a query matching every currently loaded pilot
+	 */
+	public BitmapIndex<Pilot>.Query queryPilots() {
+		List<Pilot> snapshot = crew.pilots;
+		BitmapIndex<Pilot> current = pilotIndex;
+		if (current == null || current.getRecords() != snapshot) {
+			current = new BitmapIndex<>(snapshot);
+			for (int i = 0; i < snapshot.size(); i++) {
+				Pilot p = snapshot.get(i);
+				current.add(HOME_BASE, i, p.getHomeBase());
+				current.add(RANK, i, p.getRank());
 				for (String s : p.getTypeRatings()) {
-					if (s.equals(typeCode)) {
-						pilotsByHomeBaseAndTypeRating.add(p);
-					}
+					current.add(TYPE_RATING, i, s);
+				}
+			}
+			pilotIndex = current;
+		}
+		return current.query();
+	}
+
+	/**
+	 * Starts a query over the currently loaded cabin crew that can combine any
+	 * filters on HOME_BASE and TYPE_RATING
+	 * 
+	 * @return a query matching every currently loaded cabin crew member
+	 */
+	public BitmapIndex<CabinCrew>.Query queryCabinCrew() {
+		List<CabinCrew> snapshot = crew.cabinCrew;
+		BitmapIndex<CabinCrew> current = cabinCrewIndex;
+		if (current == null || current.getRecords() != snapshot) {
+			current = new BitmapIndex<>(snapshot);
+			for (int i = 0; i < snapshot.size(); i++) {
+				CabinCrew cc = snapshot.get(i);
+				current.add(HOME_BASE, i, cc.getHomeBase());
+				for (String s : cc.getTypeRatings()) {
+					current.add(TYPE_RATING, i, s);
 				}
 			}
+			cabinCrewIndex = current;
 		}
-		return pilotsByHomeBaseAndTypeRating;
+		return current.query();
 	}
 
 	/**
@@ -201,7 +303,7 @@ public class CrewDAO implements ICrewDAO {
 	@Override
 	public List<Pilot> findPilotsByTypeRating(String typeCode) {
 		List<Pilot> pilotsByTypeRating = new ArrayList<>();
-		for (Pilot p : pilots) {
+		for (Pilot p : crew.pilots) {
 			if (p.isQualifiedFor(typeCode)) {
 				pilotsByTypeRating.add(p);
 			}
@@ -216,7 +318,7 @@ public class CrewDAO implements ICrewDAO {
 	 */
 	@Override
 	public List<CabinCrew> getAllCabinCrew() {
-		List<CabinCrew> cloned = new ArrayList<>(cabinCrew);
+		List<CabinCrew> cloned = new ArrayList<>(crew.cabinCrew);
 		return cloned;
 	}
 
@@ -227,10 +329,11 @@ public class CrewDAO implements ICrewDAO {
 	 */
 	@Override
 	public List<Crew> getAllCrew() {
-		List<Crew> crew = new ArrayList<>();
-		crew.addAll(pilots);
-		crew.addAll(cabinCrew);
-		return crew;
+		CrewSnapshot snapshot = crew;
+		List<Crew> allCrew = new ArrayList<>();
+		allCrew.addAll(snapshot.pilots);
+		allCrew.addAll(snapshot.cabinCrew);
+		return allCrew;
 	}
 
 	/**
@@ -240,14 +343,14 @@ public class CrewDAO implements ICrewDAO {
 	 */
 	@Override
 	public List<Pilot> getAllPilots() {
-		List<Pilot> cloned = new ArrayList<>(pilots);
+		List<Pilot> cloned = new ArrayList<>(crew.pilots);
 		return cloned;
 	}
 
 	@Override
 	public int getNumberOfCabinCrew() {
 		// TODO Auto-generated method stub
-		return cabinCrew.size();
+		return crew.cabinCrew.size();
 	}
 
 	/**
@@ -258,16 +361,17 @@ public class CrewDAO implements ICrewDAO {
 	@Override
 	public int getNumberOfPilots() {
 		// TODO Auto-generated method stub
-		return pilots.size();
+		return crew.pilots.size();
 	}
 
 	/**
 	 * Unloads all of the crew currently loaded, ready to start again if needed
 	 */
 	@Override
-	public void reset() {
-		pilots.clear();
-		cabinCrew.clear();
+	public synchronized void reset() {
+		crew = new CrewSnapshot(new ArrayList<Pilot>(), new ArrayList<CabinCrew>());
+		pilotSources.reset();
+		cabinCrewSources.reset();
 
 	}
 
@@ -0,0 +1,255 @@
+package solution;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import baseclasses.CabinCrew;
+import baseclasses.Crew;
+import baseclasses.FlightInfo;
+import baseclasses.ICrewDAO;
+import baseclasses.Pilot;
+
+/**
+ * The CrewStateTracker follows every crew member through a schedule while it is
+ * being built: the airport they are at, when they last landed, and how many
+ * minutes they have worked in each month. Crew are kept in one pool per role
+ * per airport, so asking for the crew available at an airport only looks at
+ * the crew actually there, instead of every crew member loaded.
+ * 
+ * All state is held in primitive arrays indexed by a dense crew id, and is
+ * reset rather than reallocated between candidates
+ */
+class CrewStateTracker {
+	private static final int CAPTAIN = 0;
+	private static final int FIRST_OFFICER = 1;
+	private static final int CABIN_CREW = 2;
+
+	private final Crew[] crew;
+	private final IdentityHashMap<Crew, Integer> ids = new IdentityHashMap<>();
+	private final HashMap<String, Integer> airportIds = new HashMap<>();
+	private final int[] role;
+	private final int[] homeBase;
+	private final YearMonth firstMonth;
+	private final int months;
+	private final long monthlyLimitMinutes;
+
+	// the state of each crew member, by crew id
+	private final int[] airport;
+	private final long[] lastLanding;
+	private final long[] monthlyMinutes;
+
+	// pools[role][airport] holds the ids of the crew of that role at that airport
+	private final int[][][] pools;
+	private final int[][] poolSizes;
+	private final int[] poolPosition;
+
+	/**
+	 * Creates a tracker for all the crew loaded, over the given dates
+	 * 
+	 * @param crewDAO             the crew to track
+	 * @param start               the first date being scheduled
+	 * @param end                 the last date being scheduled
+	 * @param monthlyLimitMinutes the most minutes a crew member should work in a
+	 *                            month
+	 */
+	CrewStateTracker(ICrewDAO crewDAO, LocalDate start, LocalDate end, long monthlyLimitMinutes) {
+		List<Crew> all = new ArrayList<>();
+		all.addAll(crewDAO.getAllPilots());
+		all.addAll(crewDAO.getAllCabinCrew());
+		crew = all.toArray(new Crew[all.size()]);
+		role = new int[crew.length];
+		homeBase = new int[crew.length];
+		for (int i = 0; i < crew.length; i++) {
+			ids.put(crew[i], i);
+			if (crew[i] instanceof Pilot) {
+				role[i] = ((Pilot) crew[i]).getRank() == Pilot.Rank.CAPTAIN ? CAPTAIN : FIRST_OFFICER;
+			} else {
+				role[i] = CABIN_CREW;
+			}
+			homeBase[i] = airportId(crew[i].getHomeBase());
+		}
+
+		firstMonth = YearMonth.from(start);
+		// one spare month for flights landing after the last date
+		months = (int) ChronoUnit.MONTHS.between(firstMonth, YearMonth.from(end)) + 2;
+		this.monthlyLimitMinutes = monthlyLimitMinutes;
+
+		airport = new int[crew.length];
+		lastLanding = new long[crew.length];
+		monthlyMinutes = new long[crew.length * months];
+		poolPosition = new int[crew.length];
+		pools = new int[3][][];
+		poolSizes = new int[3][];
+		reset();
+	}
+
+	/**
+	 * Puts every crew member back at their home base, rested, with no hours
+	 * worked, ready to build the next candidate
+	 */
+	void reset() {
+		int airports = airportIds.size();
+		for (int r = 0; r < pools.length; r++) {
+			if (pools[r] == null || pools[r].length < airports) {
+				pools[r] = Arrays.copyOf(pools[r] == null ? new int[0][] : pools[r], airports);
+				poolSizes[r] = Arrays.copyOf(poolSizes[r] == null ? new int[0] : poolSizes[r], airports);
+			}
+			Arrays.fill(poolSizes[r], 0);
+		}
+		Arrays.fill(lastLanding, Long.MIN_VALUE);
+		Arrays.fill(monthlyMinutes, 0);
+		for (int i = 0; i < crew.length; i++) {
+			addToPool(i, homeBase[i]);
+		}
+	}
+
+	/**
+	 * Returns the captains at an airport who are qualified for an aircraft type,
+	 * have landed before a flight departs, and can fly it without going over the
+	 * monthly limit
+	 * 
+	 * @param flight   the flight to crew
+	 * @param typeCode the type of aircraft allocated to the flight
+	 * @return the captains available for the flight
+	 */
+	List<Pilot> captainsFor(FlightInfo flight, String typeCode) {
+		List<Pilot> pilots = new ArrayList<>();
+		for (Crew c : available(CAPTAIN, flight, typeCode)) {
+			pilots.add((Pilot) c);
+		}
+		return pilots;
+	}
+
+	/**
+	 * Returns the first officers available for a flight, as for captainsFor()
+	 * 
+	 * @param flight   the flight to crew
+	 * @param typeCode the type of aircraft allocated to the flight
+	 * @return the first officers available for the flight
+	 */
+	List<Pilot> firstOfficersFor(FlightInfo flight, String typeCode) {
+		List<Pilot> pilots = new ArrayList<>();
+		for (Crew c : available(FIRST_OFFICER, flight, typeCode)) {
+			pilots.add((Pilot) c);
+		}
+		return pilots;
+	}
+
+	/**
+	 * Returns the cabin crew available for a flight, as for captainsFor()
+	 * 
+	 * @param flight   the flight to crew
+	 * @param typeCode the type of aircraft allocated to the flight
+	 * @return the cabin crew available for the flight
+	 */
+	List<CabinCrew> cabinCrewFor(FlightInfo flight, String typeCode) {
+		List<CabinCrew> cabinCrew = new ArrayList<>();
+		for (Crew c : available(CABIN_CREW, flight, typeCode)) {
+			cabinCrew.add((CabinCrew) c);
+		}
+		return cabinCrew;
+	}
+
+	private List<Crew> available(int wanted, FlightInfo flight, String typeCode) {
+		List<Crew> available = new ArrayList<>();
+		Integer at = airportIds.get(flight.getFlight().getDepartureAirportCode());
+		if (at == null || at >= poolSizes[wanted].length) {
+			return available;
+		}
+		long departure = minuteOf(flight.getDepartureDateTime());
+		long duration = flight.getFlight().getDuration().toMinutes();
+		int month = monthOf(flight.getDepartureDateTime());
+		int[] pool = pools[wanted][at];
+		for (int k = 0; k < poolSizes[wanted][at]; k++) {
+			int i = pool[k];
+			if (lastLanding[i] <= departure && monthlyMinutes[i * months + month] + duration <= monthlyLimitMinutes
+					&& crew[i].isQualifiedFor(typeCode)) {
+				available.add(crew[i]);
+			}
+		}
+		return available;
+	}
+
+	/**
+	 * Records that a crew member flew a flight: they are now at its arrival
+	 * airport, landed at its landing time, and have worked its duration
+	 * 
+	 * @param c      the crew member
+	 * @param flight the flight they flew
+	 */
+	void flew(Crew c, FlightInfo flight) {
+		Integer id = ids.get(c);
+		if (id == null) {
+			return;
+		}
+		int i = id;
+		removeFromPool(i);
+		addToPool(i, airportId(flight.getFlight().getArrivalAirportCode()));
+		lastLanding[i] = minuteOf(flight.getLandingDateTime());
+		monthlyMinutes[i * months + monthOf(flight.getDepartureDateTime())] += flight.getFlight().getDuration()
+				.toMinutes();
+	}
+
+	/**
+	 * Returns the minutes a crew member has worked in the month a flight departs
+	 * 
+	 * @param c      the crew member
+	 * @param flight a flight in the month to check
+	 * @return the minutes worked in that month so far
+	 */
+	long minutesWorked(Crew c, FlightInfo flight) {
+		Integer id = ids.get(c);
+		return id == null ? 0 : monthlyMinutes[id * months + monthOf(flight.getDepartureDateTime())];
+	}
+
+	private int airportId(String code) {
+		Integer id = airportIds.get(code);
+		if (id == null) {
+			id = airportIds.size();
+			airportIds.put(code, id);
+		}
+		return id;
+	}
+
+	private void addToPool(int i, int at) {
+		int r = role[i];
+		if (at >= pools[r].length) {
+			pools[r] = Arrays.copyOf(pools[r], at + 1);
+			poolSizes[r] = Arrays.copyOf(poolSizes[r], at + 1);
+		}
+		if (pools[r][at] == null) {
+			pools[r][at] = new int[4];
+		} else if (poolSizes[r][at] == pools[r][at].length) {
+			pools[r][at] = Arrays.copyOf(pools[r][at], poolSizes[r][at] * 2);
+		}
+		pools[r][at][poolSizes[r][at]] = i;
+		poolPosition[i] = poolSizes[r][at]++;
+		airport[i] = at;
+	}
+
+	private void removeFromPool(int i) {
+		int r = role[i];
+		int at = airport[i];
+		// move the last member of the pool into the gap
+		int last = pools[r][at][--poolSizes[r][at]];
+		pools[r][at][poolPosition[i]] = last;
+		poolPosition[last] = poolPosition[i];
+	}
+
+	private int monthOf(LocalDateTime time) {
+		int month = (int) ChronoUnit.MONTHS.between(firstMonth, YearMonth.from(time));
+		return Math.max(0, Math.min(months - 1, month));
+	}
+
+	private static long minuteOf(LocalDateTime time) {
+		return time.toEpochSecond(ZoneOffset.UTC) / 60;
+	}
+}
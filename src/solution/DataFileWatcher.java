@@ -0,0 +1,201 @@
+package solution;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+import baseclasses.DataLoadingException;
+
+/**
+ * The DataFileWatcher watches the data files the DAOs were loaded from, and
+ * whenever one of them changes on disk asks the DAO that loaded it to refresh
+ * just that file. DAOs only swap in the records that changed, and keep serving
+ * the previous data if a changed file cannot be read (for example because it
+ * is still being written), so a later change event can try again
+ */
+public class DataFileWatcher implements Runnable {
+
+	/**
+	 * Re-reads one changed file into the DAO that loaded it
+	 */
+	private interface Reloader {
+		int reload(Path p) throws DataLoadingException;
+	}
+
+	private final WatchService watchService;
+	private final HashMap<Path, Reloader> reloaders = new HashMap<>();
+	private final HashSet<Path> directories = new HashSet<>();
+	private Thread thread;
+
+	/**
+	 * Creates a watcher that is not yet watching any files
+	 * 
+	 * @throws IOException if the file system cannot be watched
+	 */
+	public DataFileWatcher() throws IOException {
+		watchService = FileSystems.getDefault().newWatchService();
+	}
+
+	/**
+	 * Refreshes the given aircraft DAO whenever the given file changes. The file
+	 * should already have been loaded into the DAO
+	 * 
+	 * @param dao  the DAO the file was loaded into
+	 * @param file the aircraft CSV file
+	 * @throws IOException if the file's directory cannot be watched
+	 */
+	public void watchAircraft(final AircraftDAO dao, Path file) throws IOException {
+		watch(file, new Reloader() {
+			@Override
+			public int reload(Path p) throws DataLoadingException {
+				return dao.refreshAircraftData(p);
+			}
+		});
+	}
+
+	/**
+	 * Refreshes the given crew DAO whenever the given file changes. The file
+	 * should already have been loaded into the DAO
+	 * 
+	 * @param dao  the DAO the file was loaded into
+	 * @param file the crew JSON file
+	 * @throws IOException if the file's directory cannot be watched
+	 */
+	public void watchCrew(final CrewDAO dao, Path file) throws IOException {
+		watch(file, new Reloader() {
+			@Override
+			public int reload(Path p) throws DataLoadingException {
+				return dao.refreshCrewData(p);
+			}
+		});
+	}
+
+	/**
+	 * Refreshes the given route DAO whenever the given file changes. The file
+	 * should already have been loaded into the DAO
+	 * 
+	 * @param dao  the DAO the file was loaded into
+	 * @param file the route XML file
+	 * @throws IOException if the file's directory cannot be watched
+	 */
+	public void watchRoutes(final RouteDAO dao, Path file) throws IOException {
+		watch(file, new Reloader() {
+			@Override
+			public int reload(Path p) throws DataLoadingException {
+				return dao.refreshRouteData(p);
+			}
+		});
+	}
+
+	/**
+	 * Refreshes the given passenger numbers DAO whenever the given database
+	 * changes. The database should already have been loaded into the DAO
+	 * 
+	 * @param dao  the DAO the database was loaded into
+	 * @param file the passenger numbers SQLite database
+	 * @throws IOException if the database's directory cannot be watched
+	 */
+	public void watchPassengerNumbers(final PassengerNumbersDAO dao, Path file) throws IOException {
+		watch(file, new Reloader() {
+			@Override
+			public int reload(Path p) throws DataLoadingException {
+				return dao.refreshPassengerNumbersData(p);
+			}
+		});
+	}
+
+	private synchronized void watch(Path file, Reloader reloader) throws IOException {
+		Path absolute = file.toAbsolutePath().normalize();
+		Path directory = absolute.getParent();
+		if (directories.add(directory)) {
+			directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_MODIFY);
+		}
+		reloaders.put(absolute, reloader);
+	}
+
+	/**
+	 * Starts watching on a background daemon thread
+	 */
+	public synchronized void start() {
+		if (thread == null) {
+			thread = new Thread(this, "data-file-watcher");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Stops watching; files changed after this are no longer reloaded
+	 * 
+	 * @throws IOException if the watch service cannot be closed
+	 */
+	public void close() throws IOException {
+		watchService.close();
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (true) {
+				WatchKey key = watchService.take();
+				Path directory = (Path) key.watchable();
+				// an editor often fires several events for one save, so reload each file once
+				LinkedHashSet<Path> changed = new LinkedHashSet<>();
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+						changed.addAll(watchedFilesIn(directory));
+					} else {
+						changed.add(directory.resolve((Path) event.context()));
+					}
+				}
+				key.reset();
+
+				for (Path file : changed) {
+					reload(file);
+				}
+			}
+		} catch (ClosedWatchServiceException e) {
+			// close() was called
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void reload(Path file) {
+		Reloader reloader;
+		synchronized (this) {
+			reloader = reloaders.get(file);
+		}
+		if (reloader == null) {
+			return;
+		}
+		try {
+			int changes = reloader.reload(file);
+			System.out.println("Reloaded " + file + ": " + changes + " records changed");
+		} catch (DataLoadingException dle) {
+			System.err.println("Error reloading " + file);
+			dle.printStackTrace();
+		}
+	}
+
+	private synchronized HashSet<Path> watchedFilesIn(Path directory) {
+		HashSet<Path> files = new HashSet<>();
+		for (Map.Entry<Path, Reloader> entry : reloaders.entrySet()) {
+			if (entry.getKey().getParent().equals(directory)) {
+				files.add(entry.getKey());
+			}
+		}
+		return files;
+	}
+
+}
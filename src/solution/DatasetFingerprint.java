@@ -0,0 +1,67 @@
+package solution;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * DatasetFingerprint hashes the contents of a set of data files, or the keys of
+ * the records loaded from them, so that processes can tell cheaply whether they
+ * are working from the same data
+ */
+class DatasetFingerprint {
+
+	private DatasetFingerprint() {
+	}
+
+	/**
+	 * Returns the SHA-256 hash of the given files' contents, taken in order
+	 * 
+	 * @param files the data files to hash
+	 * @return the hash as a lower-case hex string
+	 * @throws IOException if any of the files cannot be read
+	 */
+	static String of(Path... files) throws IOException {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			for (Path file : files) {
+				byte[] contents = Files.readAllBytes(file);
+				// prefix each file with its length so moving bytes between files changes the hash
+				digest.update((contents.length + ":").getBytes("UTF-8"));
+				digest.update(contents);
+			}
+			StringBuilder hex = new StringBuilder();
+			for (byte b : digest.digest()) {
+				hex.append(String.format("%02x", b));
+			}
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Returns the SHA-256 hash of a list of record keys, taken in order, so that
+	 * the same records in a different order give a different hash
+	 * 
+	 * @param keys the keys of the records, such as tail codes and crew names
+	 * @return the 32 byte hash
+	 * @throws IOException if SHA-256 is not available
+	 */
+	static byte[] ofKeys(List<String> keys) throws IOException {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			for (String key : keys) {
+				byte[] bytes = key.getBytes("UTF-8");
+				digest.update((bytes.length + ":").getBytes("UTF-8"));
+				digest.update(bytes);
+			}
+			return digest.digest();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package solution;
+
+import java.util.List;
+
+import baseclasses.Aircraft;
+import baseclasses.FlightInfo;
+import baseclasses.IPassengerNumbersDAO;
+
+/**
+ * The GreedyScheduler builds candidates like the Scheduler, but fits aircraft
+ * to demand: out of the aircraft at the departure airport it takes the smallest
+ * one that still seats every forecast passenger, or the largest if none does.
+ * A small share of choices are still made at random so that successive
+ * candidates differ
+ */
+public class GreedyScheduler extends Scheduler {
+	// The share of aircraft choices made at random
+	private static final double RANDOM_CHOICE_RATE = 0.2;
+
+	@Override
+	protected Aircraft pickAircraft(List<Aircraft> candidates, FlightInfo flight,
+			IPassengerNumbersDAO passengerNumbers) {
+		if (r.nextDouble() < RANDOM_CHOICE_RATE) {
+			return super.pickAircraft(candidates, flight, passengerNumbers);
+		}
+		int passengers = passengerNumbers.getPassengerNumbersFor(flight.getFlight().getFlightNumber(),
+				flight.getDepartureDateTime().toLocalDate());
+		Aircraft smallestFit = null;
+		Aircraft largest = null;
+		for (Aircraft a : candidates) {
+			if (a.getSeats() >= passengers && (smallestFit == null || a.getSeats() < smallestFit.getSeats())) {
+				smallestFit = a;
+			}
+			if (largest == null || a.getSeats() > largest.getSeats()) {
+				largest = a;
+			}
+		}
+		return smallestFit != null ? smallestFit : largest;
+	}
+}
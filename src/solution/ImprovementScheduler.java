@@ -0,0 +1,98 @@
+package solution;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+
+import baseclasses.Aircraft;
+import baseclasses.CabinCrew;
+import baseclasses.FlightInfo;
+import baseclasses.Pilot;
+import baseclasses.Schedule;
+
+/**
+ * The ImprovementScheduler searches around a known good schedule instead of
+ * starting from scratch. Each candidate copies the incumbent's allocations for
+ * every day but one, and rebuilds that one day at random like the Scheduler
+ * does. Without an incumbent it behaves exactly like the Scheduler
+ */
+public class ImprovementScheduler extends Scheduler {
+	private Schedule incumbent;
+	private HashMap<String, FlightInfo> incumbentFlights = new HashMap<>();
+	private LocalDate rebuiltDay;
+
+	/**
+	 * Creates an improvement scheduler. Rebuilding one day often reproduces a
+	 * candidate already seen, so candidate scores are remembered
+	 */
+	public ImprovementScheduler() {
+		setScoreCacheSize(4096);
+	}
+
+	/**
+	 * Sets the schedule to search around
+	 * 
+	 * @param incumbent the best schedule known so far, or null to search from
+	 *                  scratch
+	 */
+	public void setIncumbent(Schedule incumbent) {
+		this.incumbent = incumbent;
+		incumbentFlights.clear();
+		if (incumbent != null) {
+			for (FlightInfo flight : incumbent.getCompletedAllocations()) {
+				incumbentFlights.put(keyOf(flight), flight);
+			}
+		}
+	}
+
+	@Override
+	protected void beginCandidate(LocalDate start, LocalDate end) {
+		long days = ChronoUnit.DAYS.between(start, end) + 1;
+		rebuiltDay = start.plusDays((long) (r.nextDouble() * days));
+	}
+
+	@Override
+	protected boolean reuseAllocation(Schedule schedule, FlightInfo flight) {
+		if (incumbent == null || flight.getDepartureDateTime().toLocalDate().equals(rebuiltDay)) {
+			return false;
+		}
+		FlightInfo previous = incumbentFlights.get(keyOf(flight));
+		if (previous == null) {
+			return false;
+		}
+
+		// only copy the allocation if all of it still fits, so nothing is left half done
+		Aircraft aircraft = incumbent.getAircraftFor(previous);
+		Pilot captain = incumbent.getCaptainOf(previous);
+		Pilot firstOfficer = incumbent.getFirstOfficerOf(previous);
+		if (schedule.hasConflict(aircraft, flight) || schedule.hasConflict(captain, flight)
+				|| schedule.hasConflict(firstOfficer, flight)) {
+			return false;
+		}
+		for (CabinCrew crew : incumbent.getCabinCrewOf(previous)) {
+			if (schedule.hasConflict(crew, flight)) {
+				return false;
+			}
+		}
+
+		// everything is free, so these only fail if the schedule disagrees, and
+		// then the flight is half allocated and the candidate cannot be used
+		try {
+			schedule.allocateAircraftTo(aircraft, flight);
+			schedule.allocateCaptainTo(captain, flight);
+			schedule.allocateFirstOfficerTo(firstOfficer, flight);
+			for (CabinCrew crew : incumbent.getCabinCrewOf(previous)) {
+				schedule.allocateCabinCrewTo(crew, flight);
+			}
+			schedule.completeAllocationFor(flight);
+		} catch (Exception e) {
+			discardCandidate();
+			return false;
+		}
+		return true;
+	}
+
+	private String keyOf(FlightInfo flight) {
+		return flight.getFlight().getFlightNumber() + "," + flight.getDepartureDateTime().toLocalDate();
+	}
+}
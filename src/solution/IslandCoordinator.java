@@ -0,0 +1,207 @@
+package solution;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import baseclasses.DataLoadingException;
+import baseclasses.IAircraftDAO;
+import baseclasses.ICrewDAO;
+import baseclasses.IPassengerNumbersDAO;
+import baseclasses.IRouteDAO;
+import baseclasses.QualityScoreCalculator;
+import baseclasses.Schedule;
+
+/**
+ * The IslandCoordinator sets up and finishes an island-model search. It ships
+ * the data files to the exchange directory once, under their hash, so every
+ * island loads exactly the same data; it can start islands as local processes;
+ * and once the islands finish it collects the best schedule any of them found.
+ * 
+ * To spread the islands over several machines, point them all at a shared
+ * exchange directory and start IslandScheduler.main() on each machine instead
+ */
+public class IslandCoordinator {
+
+	private static final String AIRCRAFT_FILE = "aircraft.csv";
+	private static final String CREW_FILE = "crew.json";
+	private static final String ROUTE_FILE = "routes.xml";
+	private static final String PASSENGER_NUMBERS_FILE = "passengers.db";
+
+	private IslandCoordinator() {
+	}
+
+	/**
+	 * Copies the data files into the exchange directory under their hash, unless
+	 * a dataset with that hash has been shipped already
+	 * 
+	 * @param exchangeDirectory    the directory the islands exchange through
+	 * @param aircraftFile         the aircraft CSV file
+	 * @param crewFile             the crew JSON file
+	 * @param routeFile            the route XML file
+	 * @param passengerNumbersFile the passenger numbers SQLite database
+	 * @return the hash the dataset was shipped under
+	 * @throws IOException if the files cannot be read or copied
+	 */
+	public static String shipDataset(Path exchangeDirectory, Path aircraftFile, Path crewFile, Path routeFile,
+			Path passengerNumbersFile) throws IOException {
+		String hash = DatasetFingerprint.of(aircraftFile, crewFile, routeFile, passengerNumbersFile);
+		Path dataset = datasetDirectory(exchangeDirectory, hash);
+		if (!Files.isDirectory(dataset)) {
+			// copy under a temporary name first so islands never see half a dataset
+			Path temporary = Files.createTempDirectory(exchangeDirectory, "dataset-");
+			Files.copy(aircraftFile, temporary.resolve(AIRCRAFT_FILE));
+			Files.copy(crewFile, temporary.resolve(CREW_FILE));
+			Files.copy(routeFile, temporary.resolve(ROUTE_FILE));
+			Files.copy(passengerNumbersFile, temporary.resolve(PASSENGER_NUMBERS_FILE));
+			Files.move(temporary, dataset, StandardCopyOption.ATOMIC_MOVE);
+		}
+		return hash;
+	}
+
+	/**
+	 * Loads a shipped dataset into the given DAOs
+	 * 
+	 * @param exchangeDirectory the directory the dataset was shipped to
+	 * @param hash              the hash the dataset was shipped under
+	 * @param aircraft          the DAO to load the aircraft into
+	 * @param crew              the DAO to load the crew into
+	 * @param routes            the DAO to load the routes into
+	 * @param passengerNumbers  the DAO to load the passenger numbers into
+	 * @throws DataLoadingException if any of the files cannot be loaded
+	 */
+	public static void loadDataset(Path exchangeDirectory, String hash, IAircraftDAO aircraft, ICrewDAO crew,
+			IRouteDAO routes, IPassengerNumbersDAO passengerNumbers) throws DataLoadingException {
+		Path dataset = datasetDirectory(exchangeDirectory, hash);
+		aircraft.loadAircraftData(dataset.resolve(AIRCRAFT_FILE));
+		crew.loadCrewData(dataset.resolve(CREW_FILE));
+		routes.loadRouteData(dataset.resolve(ROUTE_FILE));
+		passengerNumbers.loadPassengerNumbersData(dataset.resolve(PASSENGER_NUMBERS_FILE));
+	}
+
+	/**
+	 * Deletes the schedules the islands of one run published to the exchange
+	 * directory, leaving those of any other run sharing the directory alone
+	 * 
+	 * @param exchangeDirectory the directory the islands exchange through
+	 * @param runId             the run whose schedules to delete
+	 * @throws IOException if the exchange directory cannot be cleared
+	 */
+	public static void clearExchange(Path exchangeDirectory, String runId) throws IOException {
+		DirectoryStream<Path> files = Files.newDirectoryStream(exchangeDirectory, "island-" + runId + "-*.best*");
+		try {
+			for (Path file : files) {
+				Files.deleteIfExists(file);
+			}
+		} finally {
+			files.close();
+		}
+	}
+
+	/**
+	 * Rebuilds every schedule the islands of a run published, and returns the
+	 * best one according to a fresh quality score
+	 * 
+	 * @param exchangeDirectory the directory the islands exchanged through
+	 * @param hash              the hash of the dataset the islands used
+	 * @param runId             the run the islands belonged to
+	 * @param aircraft          the dataset's aircraft
+	 * @param crew              the dataset's crew
+	 * @param routes            the dataset's routes
+	 * @param passengerNumbers  the dataset's passenger numbers
+	 * @param start             the first date the islands scheduled
+	 * @param end               the last date the islands scheduled
+	 * @return the best schedule published, or null if there is none
+	 * @throws IOException if the exchange directory cannot be read
+	 */
+	public static Schedule collectBest(Path exchangeDirectory, String hash, String runId, IAircraftDAO aircraft,
+			ICrewDAO crew, IRouteDAO routes, IPassengerNumbersDAO passengerNumbers, LocalDate start, LocalDate end)
+			throws IOException {
+		Schedule bestSchedule = null;
+		long bestSchedulePoints = Long.MAX_VALUE;
+		DirectoryStream<Path> files = Files.newDirectoryStream(exchangeDirectory, "island-" + runId + "-*.best");
+		try {
+			for (Path file : files) {
+				Schedule schedule;
+				try {
+					if (!AllocationFile.readHeader(file).belongsTo(hash, runId, start, end)) {
+						continue;
+					}
+					schedule = AllocationFile.read(file, aircraft, crew, routes, start, end);
+				} catch (IOException e) {
+					System.err.println("Skipping unreadable island file " + file);
+					e.printStackTrace();
+					continue;
+				}
+				long score = new QualityScoreCalculator(aircraft, crew, passengerNumbers, schedule)
+						.calculateQualityScore();
+				if (score < bestSchedulePoints) {
+					bestSchedule = schedule;
+					bestSchedulePoints = score;
+				}
+			}
+		} finally {
+			files.close();
+		}
+		return bestSchedule;
+	}
+
+	private static Path datasetDirectory(Path exchangeDirectory, String hash) {
+		return exchangeDirectory.resolve("dataset-" + hash);
+	}
+
+	/**
+	 * Runs an island-model search with every island as a process on this machine
+	 * 
+	 * @param args the aircraft, crew, route and passenger numbers files, the
+	 *             exchange directory, the number of islands, the migration
+	 *             interval, the start date, the end date and the time budget in
+	 *             seconds
+	 */
+	public static void main(String[] args) {
+		try {
+			Path exchangeDirectory = Paths.get(args[4]);
+			Files.createDirectories(exchangeDirectory);
+			String hash = shipDataset(exchangeDirectory, Paths.get(args[0]), Paths.get(args[1]), Paths.get(args[2]),
+					Paths.get(args[3]));
+			int islands = Integer.parseInt(args[5]);
+			// a fresh run id keeps this run's files apart from any other run's
+			String runId = UUID.randomUUID().toString();
+
+			String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+			List<Process> processes = new ArrayList<>();
+			for (int i = 0; i < islands; i++) {
+				processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+						IslandScheduler.class.getName(), exchangeDirectory.toString(), hash, runId,
+						String.valueOf(i), args[6], args[7], args[8], args[9]).inheritIO().start());
+			}
+			for (Process process : processes) {
+				process.waitFor();
+			}
+
+			IAircraftDAO aircraft = new AircraftDAO();
+			ICrewDAO crew = new CrewDAO();
+			IRouteDAO routes = new RouteDAO();
+			IPassengerNumbersDAO passengerNumbers = new PassengerNumbersDAO();
+			loadDataset(exchangeDirectory, hash, aircraft, crew, routes, passengerNumbers);
+			Schedule best = collectBest(exchangeDirectory, hash, runId, aircraft, crew, routes, passengerNumbers,
+					LocalDate.parse(args[7]), LocalDate.parse(args[8]));
+			clearExchange(exchangeDirectory, runId);
+			if (best == null) {
+				System.err.println("No island published a schedule");
+			} else {
+				System.out.println("Best schedule: "
+						+ new QualityScoreCalculator(aircraft, crew, passengerNumbers, best).calculateQualityScore());
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+}
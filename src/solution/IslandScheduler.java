@@ -0,0 +1,211 @@
+package solution;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+
+import baseclasses.IAircraftDAO;
+import baseclasses.ICrewDAO;
+import baseclasses.IPassengerNumbersDAO;
+import baseclasses.IRouteDAO;
+import baseclasses.IScheduler;
+import baseclasses.QualityScoreCalculator;
+import baseclasses.Schedule;
+import baseclasses.SchedulerRunner;
+
+/**
+ * The IslandScheduler runs one "island" of a distributed search. Each island
+ * searches with its own ImprovementScheduler, and every few iterations
+ * publishes its best schedule to a shared exchange directory and adopts any
+ * better schedule another island has published there. The adopted schedule
+ * becomes the incumbent the island goes on searching around. The exchange directory
+ * can be local, for several processes on one machine, or a shared network
+ * directory for several machines.
+ * 
+ * Islands never send the data itself: every message carries only the hash of
+ * the dataset it was built from, the run and the dates, and is ignored by
+ * islands working on anything else. The IslandCoordinator ships the data files once, and
+ * collects the overall best schedule at the end
+ */
+public class IslandScheduler implements IScheduler {
+	private final Path exchangeDirectory;
+	private final String datasetHash;
+	private final String runId;
+	private final int islandId;
+	private final int migrationInterval;
+	private final ImprovementScheduler scheduler = new ImprovementScheduler();
+	private long timeBudget = 1000 * 100;
+	private long bestSchedulePoints;
+	private volatile boolean stopped = false;
+
+	/**
+	 * Creates an island
+	 * 
+	 * @param exchangeDirectory the directory the islands exchange schedules
+	 *                          through
+	 * @param datasetHash       the hash of the data this island schedules from
+	 * @param runId             the run this island belongs to, shared by all its
+	 *                          islands
+	 * @param islandId          this island's number, unique among the islands
+	 * @param migrationInterval the number of candidates to build between
+	 *                          exchanges
+	 */
+	public IslandScheduler(Path exchangeDirectory, String datasetHash, String runId, int islandId,
+			int migrationInterval) {
+		this.exchangeDirectory = exchangeDirectory;
+		this.datasetHash = datasetHash;
+		this.runId = runId;
+		this.islandId = islandId;
+		this.migrationInterval = migrationInterval;
+		scheduler.setSeed(islandId);
+		// every island shares the coordinator's console
+		scheduler.setVerbose(false);
+	}
+
+	/**
+	 * Sets how long generateSchedule() keeps searching before returning the best
+	 * schedule found
+	 * 
+	 * @param timeBudget the search time in milliseconds
+	 */
+	public void setTimeBudget(long timeBudget) {
+		this.timeBudget = timeBudget;
+	}
+
+	/**
+	 * Returns the score of the schedule returned by the last call to
+	 * generateSchedule()
+	 * 
+	 * @return the best score found, lower being better
+	 */
+	public long getBestSchedulePoints() {
+		return bestSchedulePoints;
+	}
+
+	@Override
+	public Schedule generateSchedule(IAircraftDAO arg0, ICrewDAO arg1, IRouteDAO arg2, IPassengerNumbersDAO arg3,
+			LocalDate arg4, LocalDate arg5) {
+		Schedule bestSchedule = null;
+		bestSchedulePoints = Long.MAX_VALUE;
+		stopped = false;
+		scheduler.setIterationLimit(migrationInterval);
+		scheduler.setIncumbent(null);
+
+		long startTime = System.currentTimeMillis();
+		long remaining = timeBudget;
+		while (remaining > 0 && !stopped) {
+			scheduler.setTimeBudget(remaining);
+			scheduler.setPointsToBeat(bestSchedulePoints);
+			Schedule schedule = scheduler.generateSchedule(arg0, arg1, arg2, arg3, arg4, arg5);
+			if (schedule != null && scheduler.getBestSchedulePoints() < bestSchedulePoints) {
+				bestSchedule = schedule;
+				bestSchedulePoints = scheduler.getBestSchedulePoints();
+				try {
+					AllocationFile.write(islandFile(islandId),
+							new AllocationFile.Header(datasetHash, runId, arg4, arg5, bestSchedulePoints), bestSchedule);
+				} catch (IOException e) {
+					System.err.println("Island " + islandId + " could not publish its best schedule");
+					e.printStackTrace();
+				}
+			}
+
+			// migrate in the best schedule any other island has found
+			Path peerFile = bestPeerFile(bestSchedulePoints, arg4, arg5);
+			if (peerFile != null) {
+				try {
+					Schedule migrant = AllocationFile.read(peerFile, arg0, arg1, arg2, arg4, arg5);
+					long migrantPoints = new QualityScoreCalculator(arg0, arg1, arg3, migrant)
+							.calculateQualityScore();
+					if (migrantPoints < bestSchedulePoints) {
+						bestSchedule = migrant;
+						bestSchedulePoints = migrantPoints;
+					}
+				} catch (IOException e) {
+					System.err.println("Island " + islandId + " could not read " + peerFile);
+					e.printStackTrace();
+				}
+			}
+			// the next slice searches around the best schedule known, whoever found it
+			scheduler.setIncumbent(bestSchedule);
+			remaining = timeBudget - (System.currentTimeMillis() - startTime);
+		}
+		return bestSchedule;
+	}
+
+	/**
+	 * Returns the file of the other island with the best published schedule
+	 * from the same run, if that schedule beats the given score
+	 */
+	private Path bestPeerFile(long toBeat, LocalDate start, LocalDate end) {
+		Path best = null;
+		long bestScore = toBeat;
+		try {
+			DirectoryStream<Path> files = Files.newDirectoryStream(exchangeDirectory, "island-" + runId + "-*.best");
+			try {
+				for (Path file : files) {
+					if (file.equals(islandFile(islandId))) {
+						continue;
+					}
+					AllocationFile.Header header = AllocationFile.readHeader(file);
+					if (header.belongsTo(datasetHash, runId, start, end) && header.score < bestScore) {
+						best = file;
+						bestScore = header.score;
+					}
+				}
+			} finally {
+				files.close();
+			}
+		} catch (IOException e) {
+			System.err.println("Island " + islandId + " could not read the exchange directory");
+			e.printStackTrace();
+		}
+		return best;
+	}
+
+	private Path islandFile(int id) {
+		return exchangeDirectory.resolve("island-" + runId + "-" + id + ".best");
+	}
+
+	@Override
+	public void setSchedulerRunner(SchedulerRunner arg0) {
+
+	}
+
+	@Override
+	public void stop() {
+		stopped = true;
+		scheduler.stop();
+	}
+
+	/**
+	 * Runs a single island as its own process, scheduling from the dataset the
+	 * IslandCoordinator shipped to the exchange directory
+	 * 
+	 * @param args the exchange directory, dataset hash, run id, island number,
+	 *             migration interval, start date, end date and time budget in
+	 *             seconds
+	 */
+	public static void main(String[] args) {
+		Path exchangeDirectory = Paths.get(args[0]);
+		String datasetHash = args[1];
+		try {
+			IAircraftDAO aircraft = new AircraftDAO();
+			ICrewDAO crew = new CrewDAO();
+			IRouteDAO routes = new RouteDAO();
+			IPassengerNumbersDAO passengerNumbers = new PassengerNumbersDAO();
+			IslandCoordinator.loadDataset(exchangeDirectory, datasetHash, aircraft, crew, routes, passengerNumbers);
+
+			IslandScheduler island = new IslandScheduler(exchangeDirectory, datasetHash, args[2],
+					Integer.parseInt(args[3]), Integer.parseInt(args[4]));
+			island.setTimeBudget(Long.parseLong(args[7]) * 1000);
+			island.generateSchedule(aircraft, crew, routes, passengerNumbers, LocalDate.parse(args[5]),
+					LocalDate.parse(args[6]));
+		} catch (Exception e) {
+			System.err.println("Island " + args[3] + " failed");
+			e.printStackTrace();
+		}
+	}
+}
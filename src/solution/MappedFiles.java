@@ -0,0 +1,46 @@
+package solution;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Helper for the memory-mapped DAOs: hands out zero-filled scratch buffers that
+ * live in memory-mapped temporary files rather than on the Java heap
+ */
+class MappedFiles {
+
+	private MappedFiles() {
+	}
+
+	/**
+	 * Creates a zero-filled temporary file of the given size and maps it into
+	 * memory. The file is deleted as soon as it is mapped, so repeated loads do
+	 * not fill the temporary directory; the mapping itself stays valid until the
+	 * buffer is garbage collected
+	 * 
+	 * @param prefix the prefix of the temporary file's name
+	 * @param size   the size of the buffer in bytes, at most Integer.MAX_VALUE
+	 * @return a read-write buffer over the new file
+	 * @throws IOException if the file cannot be created or mapped
+	 */
+	static MappedByteBuffer allocate(String prefix, long size) throws IOException {
+		Path file = Files.createTempFile(prefix, ".col");
+		RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw");
+		try {
+			raf.setLength(Math.max(size, 1));
+			return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, 1));
+		} finally {
+			raf.close();
+			try {
+				Files.delete(file);
+			} catch (IOException e) {
+				// some platforms refuse to delete a mapped file, so leave it until exit
+				file.toFile().deleteOnExit();
+			}
+		}
+	}
+}
@@ -0,0 +1,166 @@
+package solution;
+
+import java.nio.MappedByteBuffer;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDate;
+
+import baseclasses.DataLoadingException;
+import baseclasses.IPassengerNumbersDAO;
+
+/**
+ * The MappedPassengerNumbersDAO loads the same SQLite forecast databases as the
+ * PassengerNumbersDAO, but caches the forecasts off the Java heap in a
+ * memory-mapped hash table with one column each for the date (as an epoch
+ * day), the flight number and the estimate. Lookups probe the table directly,
+ * so no objects are created per forecast.
+ */
+public class MappedPassengerNumbersDAO implements IPassengerNumbersDAO {
+
+	/**
+	 * One complete, immutable open-addressing hash table of forecasts
+	 */
+	private static class Table {
+		// bytes per slot across all columns: 3 ints and a used flag
+		private static final int SLOT_BYTES = 3 * 4 + 1;
+
+		private final MappedByteBuffer buffer;
+		private final int capacity;
+		private int count;
+
+		// the offset of each column within the buffer
+		private final int used;
+		private final int epochDays;
+		private final int flightNumbers;
+		private final int estimates;
+
+		Table(MappedByteBuffer buffer, int capacity) {
+			this.buffer = buffer;
+			this.capacity = capacity;
+			used = 0;
+			epochDays = used + capacity;
+			flightNumbers = epochDays + 4 * capacity;
+			estimates = flightNumbers + 4 * capacity;
+		}
+
+		/**
+		 * Returns the slot holding the given forecast, or the empty slot where it
+		 * would go
+		 */
+		int slotOf(int epochDay, int flightNumber) {
+			int hash = (epochDay * 31 + flightNumber) * 0x9E3779B9;
+			int slot = (hash ^ (hash >>> 16)) & (capacity - 1);
+			while (buffer.get(used + slot) != 0 && (buffer.getInt(epochDays + 4 * slot) != epochDay
+					|| buffer.getInt(flightNumbers + 4 * slot) != flightNumber)) {
+				slot = (slot + 1) & (capacity - 1);
+			}
+			return slot;
+		}
+
+		int get(int epochDay, int flightNumber) {
+			if (capacity == 0) {
+				return -1;
+			}
+			int slot = slotOf(epochDay, flightNumber);
+			return buffer.get(used + slot) != 0 ? buffer.getInt(estimates + 4 * slot) : -1;
+		}
+
+		void put(int epochDay, int flightNumber, int estimate) {
+			int slot = slotOf(epochDay, flightNumber);
+			if (buffer.get(used + slot) == 0) {
+				buffer.put(used + slot, (byte) 1);
+				buffer.putInt(epochDays + 4 * slot, epochDay);
+				buffer.putInt(flightNumbers + 4 * slot, flightNumber);
+				count++;
+			}
+			buffer.putInt(estimates + 4 * slot, estimate);
+		}
+
+		/**
+		 * Copies every forecast in this table into another
+		 */
+		void copyTo(Table other) {
+			for (int slot = 0; slot < capacity; slot++) {
+				if (buffer.get(used + slot) != 0) {
+					other.put(buffer.getInt(epochDays + 4 * slot), buffer.getInt(flightNumbers + 4 * slot),
+							buffer.getInt(estimates + 4 * slot));
+				}
+			}
+		}
+	}
+
+	private volatile Table table = new Table(null, 0);
+
+	/**
+	 * Returns the number of passenger number entries in the cache
+	 * 
+	 * @return the number of passenger number entries in the cache
+	 */
+	@Override
+	public int getNumberOfEntries() {
+		return table.count;
+	}
+
+	/**
+	 * Returns the predicted number of passengers for a given flight on a given
+	 * date, or -1 if no data available
+	 * 
+	 * @param flightNumber The flight number of the flight to check for
+	 * @param date         the date of the flight to check for
+	 * @return the predicted number of passengers, or -1 if no data available
+	 */
+	@Override
+	public int getPassengerNumbersFor(int flightNumber, LocalDate date) {
+		return table.get((int) date.toEpochDay(), flightNumber);
+	}
+
+	/**
+	 * Loads the passenger numbers data from the specified SQLite database into a
+	 * cache for future calls to getPassengerNumbersFor() Multiple calls to this
+	 * method are additive, but flight numbers/dates previously cached will be
+	 * overwritten The cache can be reset by calling reset()
+	 * 
+	 * @param p The path of the SQLite database to load data from
+	 * @throws DataLoadingException If there is a problem loading from the database
+	 */
+	@Override
+	public synchronized void loadPassengerNumbersData(Path p) throws DataLoadingException {
+		try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + p.toString());
+				Statement s = connection.createStatement()) {
+			int rows;
+			try (ResultSet rs = s.executeQuery("SELECT COUNT(*) FROM PassengerNumbers;")) {
+				rows = rs.next() ? rs.getInt(1) : 0;
+			}
+
+			// keep the table at most half full so probes stay short
+			Table current = table;
+			int capacity = Integer.highestOneBit(Math.max(1, current.count + rows)) * 4;
+			Table loaded = new Table(MappedFiles.allocate("forecasts", (long) Table.SLOT_BYTES * capacity),
+					capacity);
+			current.copyTo(loaded);
+
+			try (ResultSet rs = s.executeQuery("SELECT * FROM PassengerNumbers;")) {
+				while (rs.next()) {
+					loaded.put((int) LocalDate.parse(rs.getString("Date")).toEpochDay(), rs.getInt("FlightNumber"),
+							rs.getInt("LoadEstimate"));
+				}
+			}
+			table = loaded;
+
+		} catch (Exception e) {
+			throw new DataLoadingException(e);
+		}
+	}
+
+	/**
+	 * Removes all data from the DAO, ready to start again if needed
+	 */
+	@Override
+	public synchronized void reset() {
+		table = new Table(null, 0);
+	}
+
+}
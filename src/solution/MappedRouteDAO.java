@@ -0,0 +1,351 @@
+package solution;
+
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.TextStyle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+
+import baseclasses.DataLoadingException;
+import baseclasses.IRouteDAO;
+import baseclasses.Route;
+
+/**
+ * The MappedRouteDAO loads the same XML route files as the RouteDAO, but keeps
+ * the routes off the Java heap in a memory-mapped, column-per-field store.
+ * Airport codes, airport names and days of the week are stored as small ids
+ * into on-heap dictionaries, and Route objects are only created for the routes
+ * a query returns, so heap usage stays flat however large the timetable is.
+ * Route files are streamed straight into the columns rather than parsed into a
+ * document first.
+ */
+public class MappedRouteDAO implements IRouteDAO {
+
+	// the elements of a route that are stored
+	private static final List<String> FIELDS = Arrays.asList("FlightNumber", "DayOfWeek", "DepartureTime",
+			"DepartureAirport", "DepartureAirportIATACode", "ArrivalTime", "ArrivalAirport", "ArrivalAirportIATACode",
+			"Duration");
+
+	/**
+	 * One complete, immutable set of loaded routes: the mapped columns plus the
+	 * dictionaries their ids refer to
+	 */
+	private static class Columns {
+		// bytes per route across all columns: 6 ints and 1 byte
+		private static final int ROUTE_BYTES = 6 * 4 + 1;
+
+		private final MappedByteBuffer buffer;
+		private final int count;
+		private final List<String> days;
+		private final List<String> airportCodes;
+		private final List<String> airportNames;
+
+		// the offset of each column within the buffer
+		private final int flightNumbers;
+		private final int dayIds;
+		private final int departureAirports;
+		private final int arrivalAirports;
+		private final int departureTimes;
+		private final int arrivalTimes;
+		private final int durations;
+
+		Columns(MappedByteBuffer buffer, int count, List<String> days, List<String> airportCodes,
+				List<String> airportNames) {
+			this.buffer = buffer;
+			this.count = count;
+			this.days = days;
+			this.airportCodes = airportCodes;
+			this.airportNames = airportNames;
+			flightNumbers = 0;
+			dayIds = flightNumbers + 4 * count;
+			departureAirports = dayIds + count;
+			arrivalAirports = departureAirports + 4 * count;
+			departureTimes = arrivalAirports + 4 * count;
+			arrivalTimes = departureTimes + 4 * count;
+			durations = arrivalTimes + 4 * count;
+		}
+
+		int flightNumber(int i) {
+			return buffer.getInt(flightNumbers + 4 * i);
+		}
+
+		int day(int i) {
+			return buffer.get(dayIds + i);
+		}
+
+		int departureAirport(int i) {
+			return buffer.getInt(departureAirports + 4 * i);
+		}
+
+		Route materialise(int i) {
+			int departure = departureAirport(i);
+			int arrival = buffer.getInt(arrivalAirports + 4 * i);
+			Route route = new Route();
+			route.setFlightNumber(flightNumber(i));
+			route.setDayOfWeek(days.get(day(i)));
+			route.setDepartureTime(LocalTime.ofSecondOfDay(buffer.getInt(departureTimes + 4 * i)));
+			route.setDepartureAirport(airportNames.get(departure));
+			route.setDepartureAirportCode(airportCodes.get(departure));
+			route.setArrivalTime(LocalTime.ofSecondOfDay(buffer.getInt(arrivalTimes + 4 * i)));
+			route.setArrivalAirport(airportNames.get(arrival));
+			route.setArrivalAirportCode(airportCodes.get(arrival));
+			route.setDuration(Duration.ofSeconds(buffer.getInt(durations + 4 * i)));
+			return route;
+		}
+	}
+
+	private volatile Columns columns = new Columns(null, 0, new ArrayList<String>(), new ArrayList<String>(),
+			new ArrayList<String>());
+
+	/**
+	 * Finds all flights that depart on the specified day of the week
+	 * 
+	 * @param dayOfWeek A three letter day of the week, e.g. "Tue"
+	 * @return A list of all routes that depart on this day
+	 */
+	@Override
+	public List<Route> findRoutesByDayOfWeek(String dayOfWeek) {
+		Columns c = columns;
+		List<Route> routesByDayOfWeek = new ArrayList<Route>();
+		int day = c.days.indexOf(dayOfWeek);
+		for (int i = 0; i < c.count && day >= 0; i++) {
+			if (c.day(i) == day) {
+				routesByDayOfWeek.add(c.materialise(i));
+			}
+		}
+		return routesByDayOfWeek;
+	}
+
+	/**
+	 * Finds all of the flights that depart from a specific airport on a specific
+	 * day of the week
+	 * 
+	 * @param airportCode the three letter code of the airport to search for, e.g.
+	 *                    "MAN"
+	 * @param dayOfWeek   the three letter day of the week code to searh for, e.g.
+	 *                    "Tue"
+	 * @return A list of all routes from that airport on that day
+	 */
+	@Override
+	public List<Route> findRoutesByDepartureAirportAndDay(String airportCode, String dayOfWeek) {
+		Columns c = columns;
+		List<Route> routesByDepartureAirportAndDay = new ArrayList<Route>();
+		int airport = c.airportCodes.indexOf(airportCode);
+		int day = c.days.indexOf(dayOfWeek);
+		for (int i = 0; i < c.count && airport >= 0 && day >= 0; i++) {
+			if (c.departureAirport(i) == airport && c.day(i) == day) {
+				routesByDepartureAirportAndDay.add(c.materialise(i));
+			}
+		}
+		return routesByDepartureAirportAndDay;
+	}
+
+	/**
+	 * Finds all of the flights that depart from a specific airport
+	 * 
+	 * @param airportCode the three letter code of the airport to search for, e.g.
+	 *                    "MAN"
+	 * @return A list of all of the routes departing the specified airport
+	 */
+	@Override
+	public List<Route> findRoutesDepartingAirport(String airportCode) {
+		Columns c = columns;
+		List<Route> routesByDepartingAirport = new ArrayList<Route>();
+		int airport = c.airportCodes.indexOf(airportCode);
+		for (int i = 0; i < c.count && airport >= 0; i++) {
+			if (c.departureAirport(i) == airport) {
+				routesByDepartingAirport.add(c.materialise(i));
+			}
+		}
+		return routesByDepartingAirport;
+	}
+
+	/**
+	 * Finds all of the flights that depart on the specified date
+	 * 
+	 * @param date the date to search for
+	 * @return A list of all routes that dpeart on this date
+	 */
+	@Override
+	public List<Route> findRoutesbyDate(LocalDate date) {
+		return findRoutesByDayOfWeek(date.getDayOfWeek().getDisplayName(TextStyle.SHORT, Locale.UK));
+	}
+
+	/**
+	 * Returns The full list of all currently loaded routes
+	 * 
+	 * @return The full list of all currently loaded routes
+	 */
+	@Override
+	public List<Route> getAllRoutes() {
+		Columns c = columns;
+		List<Route> allRoutes = new ArrayList<Route>(c.count);
+		for (int i = 0; i < c.count; i++) {
+			allRoutes.add(c.materialise(i));
+		}
+		return allRoutes;
+	}
+
+	/**
+	 * Returns The number of routes currently loaded
+	 * 
+	 * @return The number of routes currently loaded
+	 */
+	@Override
+	public int getNumberOfRoutes() {
+		return columns.count;
+	}
+
+	/**
+	 * Loads the route data from the specified file, adding them to the currently
+	 * loaded routes Multiple calls to this function, perhaps on different files,
+	 * would thus be cumulative
+	 * 
+	 * @param p A Path pointing to the file from which data could be loaded
+	 * @throws DataLoadingException if anything goes wrong. The exception's "cause"
+	 *                              indicates the underlying exception
+	 */
+	@Override
+	public synchronized void loadRouteData(Path p) throws DataLoadingException {
+		Columns current = columns;
+		List<String> days = new ArrayList<String>(current.days);
+		List<String> airportCodes = new ArrayList<String>(current.airportCodes);
+		List<String> airportNames = new ArrayList<String>(current.airportNames);
+		HashMap<String, Integer> airportIds = new HashMap<String, Integer>();
+		for (int i = 0; i < airportCodes.size(); i++) {
+			airportIds.put(airportCodes.get(i), i);
+		}
+
+		try {
+			// one pass to size the columns, and a second to fill them
+			int count = current.count + countRoutes(p);
+			Columns loaded = new Columns(MappedFiles.allocate("routes", (long) Columns.ROUTE_BYTES * count),
+					count, days, airportCodes, airportNames);
+			// copy the routes already loaded, column by column
+			for (int i = 0; i < current.count; i++) {
+				loaded.buffer.putInt(loaded.flightNumbers + 4 * i, current.flightNumber(i));
+				loaded.buffer.put(loaded.dayIds + i, (byte) current.day(i));
+				loaded.buffer.putInt(loaded.departureAirports + 4 * i, current.departureAirport(i));
+				loaded.buffer.putInt(loaded.arrivalAirports + 4 * i,
+						current.buffer.getInt(current.arrivalAirports + 4 * i));
+				loaded.buffer.putInt(loaded.departureTimes + 4 * i,
+						current.buffer.getInt(current.departureTimes + 4 * i));
+				loaded.buffer.putInt(loaded.arrivalTimes + 4 * i, current.buffer.getInt(current.arrivalTimes + 4 * i));
+				loaded.buffer.putInt(loaded.durations + 4 * i, current.buffer.getInt(current.durations + 4 * i));
+			}
+
+			int i = current.count;
+			HashMap<String, String> route = new HashMap<String, String>();
+			boolean inRoute = false;
+			try (InputStream in = Files.newInputStream(p)) {
+				XMLStreamReader xml = XMLInputFactory.newInstance().createXMLStreamReader(in);
+				try {
+					while (xml.hasNext()) {
+						int event = xml.next();
+						if (event == XMLStreamConstants.START_ELEMENT && xml.getLocalName().equals("Route")) {
+							route.clear();
+							inRoute = true;
+						} else if (event == XMLStreamConstants.START_ELEMENT && inRoute
+								&& FIELDS.contains(xml.getLocalName())) {
+							route.put(xml.getLocalName(), xml.getElementText());
+						} else if (event == XMLStreamConstants.END_ELEMENT && xml.getLocalName().equals("Route")) {
+							if (i == count) {
+								throw new IllegalStateException(p + " changed while it was being loaded");
+							}
+							putRoute(loaded, i++, route, days, airportIds, airportCodes, airportNames);
+							inRoute = false;
+						}
+					}
+				} finally {
+					xml.close();
+				}
+			}
+			if (i != count) {
+				throw new IllegalStateException(p + " changed while it was being loaded");
+			}
+			columns = loaded;
+
+		} catch (Exception e) {
+			throw new DataLoadingException(e);
+		}
+	}
+
+	/**
+	 * Counts the routes in the specified file without keeping any of them
+	 */
+	private static int countRoutes(Path p) throws Exception {
+		int count = 0;
+		try (InputStream in = Files.newInputStream(p)) {
+			XMLStreamReader xml = XMLInputFactory.newInstance().createXMLStreamReader(in);
+			try {
+				while (xml.hasNext()) {
+					if (xml.next() == XMLStreamConstants.START_ELEMENT && xml.getLocalName().equals("Route")) {
+						count++;
+					}
+				}
+			} finally {
+				xml.close();
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Writes one streamed route into row i of the columns
+	 */
+	private void putRoute(Columns loaded, int i, HashMap<String, String> route, List<String> days,
+			HashMap<String, Integer> airportIds, List<String> airportCodes, List<String> airportNames) {
+		String day = route.get("DayOfWeek");
+		if (day == null) {
+			throw new IllegalArgumentException("route " + (i + 1) + " has no DayOfWeek");
+		}
+		if (!days.contains(day)) {
+			days.add(day);
+		}
+		loaded.buffer.putInt(loaded.flightNumbers + 4 * i, Integer.parseInt(route.get("FlightNumber")));
+		loaded.buffer.put(loaded.dayIds + i, (byte) days.indexOf(day));
+		loaded.buffer.putInt(loaded.departureAirports + 4 * i, airportId(route.get("DepartureAirportIATACode"),
+				route.get("DepartureAirport"), airportIds, airportCodes, airportNames));
+		loaded.buffer.putInt(loaded.arrivalAirports + 4 * i, airportId(route.get("ArrivalAirportIATACode"),
+				route.get("ArrivalAirport"), airportIds, airportCodes, airportNames));
+		loaded.buffer.putInt(loaded.departureTimes + 4 * i, LocalTime.parse(route.get("DepartureTime")).toSecondOfDay());
+		loaded.buffer.putInt(loaded.arrivalTimes + 4 * i, LocalTime.parse(route.get("ArrivalTime")).toSecondOfDay());
+		loaded.buffer.putInt(loaded.durations + 4 * i, (int) Duration.parse(route.get("Duration")).getSeconds());
+	}
+
+	/**
+	 * Returns the dictionary id of an airport, adding it if it is new
+	 */
+	private int airportId(String code, String name, HashMap<String, Integer> airportIds, List<String> airportCodes,
+			List<String> airportNames) {
+		Integer id = airportIds.get(code);
+		if (id == null) {
+			id = airportCodes.size();
+			airportIds.put(code, id);
+			airportCodes.add(code);
+			airportNames.add(name);
+		}
+		return id;
+	}
+
+	/**
+	 * Unloads all of the routes currently loaded, ready to start again if needed
+	 */
+	@Override
+	public synchronized void reset() {
+		columns = new Columns(null, 0, new ArrayList<String>(), new ArrayList<String>(), new ArrayList<String>());
+	}
+
+}
@@ -6,17 +6,25 @@ import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.Statement;
 import java.time.LocalDate;
+import java.util.Collections;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import baseclasses.DataLoadingException;
 import baseclasses.IPassengerNumbersDAO;
 
 /**
  * The PassengerNumbersDAO is responsible for loading an SQLite database
- * containing forecasts of passenger numbers for flights on dates
+ * containing forecasts of passenger numbers for flights on dates.
  */
 public class PassengerNumbersDAO implements IPassengerNumbersDAO {
-	private HashMap<HashMap<String, Integer>, Integer> data = new HashMap<HashMap<String, Integer>, Integer>();
+	private volatile Map<HashMap<String, Integer>, Integer> data = Collections.emptyMap();
+	// The entries loaded from each database, in the order the databases were last
+	// loaded, so a changed database can be diffed without losing other databases'
+	private LinkedHashMap<Path, HashMap<HashMap<String, Integer>, Integer>> sources = new LinkedHashMap<Path, HashMap<HashMap<String, Integer>, Integer>>();
 
 	/**
 	 * Returns the number of passenger number entries in the cache
@@ -41,8 +49,9 @@ public class PassengerNumbersDAO implements IPassengerNumbersDAO {
 		int passengerNumbers = 0;
 		HashMap<String, Integer> key = new HashMap<String, Integer>();
 		key.put(date.toString(), flightNumber);
-		if (data.containsKey(key)) {
-			passengerNumbers = data.get(key);
+		Integer estimate = data.get(key);
+		if (estimate != null) {
+			passengerNumbers = estimate;
 		} else {
 			passengerNumbers = -1;
 		}
@@ -60,32 +69,125 @@ public class PassengerNumbersDAO implements IPassengerNumbersDAO {
 	 * @throws DataLoadingException If there is a problem loading from the database
 	 */
 	@Override
-	public void loadPassengerNumbersData(Path p) throws DataLoadingException {
-		Connection connection = null;
-		try {
-			connection = DriverManager.getConnection("jdbc:sqlite:" + p.toString());
-			Statement s = connection.createStatement();
-			ResultSet rs = s.executeQuery("SELECT * FROM PassengerNumbers;");
+	public synchronized void loadPassengerNumbersData(Path p) throws DataLoadingException {
+		HashMap<HashMap<String, Integer>, Integer> loaded = new HashMap<HashMap<String, Integer>, Integer>(data);
+		HashMap<HashMap<String, Integer>, Integer> parsed = parsePassengerNumbersData(p);
+		loaded.putAll(parsed);
+		// this database now overwrites every other, so it moves to the end
+		Path source = SourceRecords.sourceOf(p);
+		HashMap<HashMap<String, Integer>, Integer> entries = sources.remove(source);
+		if (entries == null) {
+			entries = new HashMap<HashMap<String, Integer>, Integer>();
+		}
+		entries.putAll(parsed);
+		sources.put(source, entries);
+		data = Collections.unmodifiableMap(loaded);
+	}
+
+	/**
+	 * Re-reads a database that was loaded before and applies only what changed in
+	 * it: new and changed forecasts are stored, and forecasts no longer in the
+	 * database are removed. Databases loaded after this one still take
+	 * precedence, and a forecast removed from this database falls back to the
+	 * value an earlier database gave it
+	 * 
+	 * @param p The path of the SQLite database to re-read
+	 * @return the number of forecasts added, removed or changed
+	 * @throws DataLoadingException If there is a problem loading from the
+	 *                              database; the cache is then left untouched
+	 */
+	public synchronized int refreshPassengerNumbersData(Path p) throws DataLoadingException {
+		HashMap<HashMap<String, Integer>, Integer> parsed = parsePassengerNumbersData(p);
+		Path source = SourceRecords.sourceOf(p);
+		HashMap<HashMap<String, Integer>, Integer> previous = sources.containsKey(source) ? sources.get(source)
+				: new HashMap<HashMap<String, Integer>, Integer>();
+		List<HashMap<HashMap<String, Integer>, Integer>> earlier = new ArrayList<HashMap<HashMap<String, Integer>, Integer>>();
+		List<HashMap<HashMap<String, Integer>, Integer>> later = new ArrayList<HashMap<HashMap<String, Integer>, Integer>>();
+		boolean after = false;
+		for (Map.Entry<Path, HashMap<HashMap<String, Integer>, Integer>> entry : sources.entrySet()) {
+			if (entry.getKey().equals(source)) {
+				after = true;
+			} else if (after) {
+				later.add(entry.getValue());
+			} else {
+				earlier.add(entry.getValue());
+			}
+		}
+		HashMap<HashMap<String, Integer>, Integer> refreshed = new HashMap<HashMap<String, Integer>, Integer>(data);
+
+		int changes = 0;
+		for (HashMap<String, Integer> key : previous.keySet()) {
+			if (parsed.containsKey(key) || lastValue(later, key) != null) {
+				continue;
+			}
+			Integer fallback = lastValue(earlier, key);
+			Integer removed = fallback == null ? refreshed.remove(key) : refreshed.put(key, fallback);
+			if (!removed.equals(fallback)) {
+				changes++;
+			}
+		}
+		for (Map.Entry<HashMap<String, Integer>, Integer> entry : parsed.entrySet()) {
+			if (lastValue(later, entry.getKey()) == null
+					&& !entry.getValue().equals(refreshed.put(entry.getKey(), entry.getValue()))) {
+				changes++;
+			}
+		}
+
+		sources.put(source, parsed);
+		if (changes > 0) {
+			data = Collections.unmodifiableMap(refreshed);
+		}
+		return changes;
+	}
+
+	/**
+	 * Returns the value the last of the given databases holds for a forecast
+	 */
+	private static Integer lastValue(List<HashMap<HashMap<String, Integer>, Integer>> databases,
+			HashMap<String, Integer> key) {
+		for (int i = databases.size() - 1; i >= 0; i--) {
+			Integer value = databases.get(i).get(key);
+			if (value != null) {
+				return value;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Reads every forecast in the specified SQLite database
+	 * 
+	 * @param p The path of the SQLite database to load data from
+	 * @return the forecasts in the database
+	 * @throws DataLoadingException If there is a problem loading from the database
+	 */
+	private HashMap<HashMap<String, Integer>, Integer> parsePassengerNumbersData(Path p)
+			throws DataLoadingException {
+		HashMap<HashMap<String, Integer>, Integer> loaded = new HashMap<HashMap<String, Integer>, Integer>();
+		try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + p.toString());
+				Statement s = connection.createStatement();
+				ResultSet rs = s.executeQuery("SELECT * FROM PassengerNumbers;")) {
 
 			while (rs.next()) {
 				HashMap<String, Integer> key = new HashMap<String, Integer>();
 				key.put(rs.getString("Date"), rs.getInt("FlightNumber"));
-				data.put(key, rs.getInt("LoadEstimate"));
+				loaded.put(key, rs.getInt("LoadEstimate"));
 
 			}
-			s.close();
 
 		} catch (Exception e) {
 			throw new DataLoadingException(e);
 		}
+		return loaded;
 	}
 
 	/**
 	 * Removes all data from the DAO, ready to start again if needed
 	 */
 	@Override
-	public void reset() {
-		data.clear();
+	public synchronized void reset() {
+		data = Collections.emptyMap();
+		sources.clear();
 
 	}
 
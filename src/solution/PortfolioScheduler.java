@@ -0,0 +1,324 @@
+package solution;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import baseclasses.IAircraftDAO;
+import baseclasses.ICrewDAO;
+import baseclasses.IPassengerNumbersDAO;
+import baseclasses.IRouteDAO;
+import baseclasses.IScheduler;
+import baseclasses.Schedule;
+import baseclasses.SchedulerRunner;
+
+/**
+ * The PortfolioScheduler runs several search strategies side by side and
+ * shares the cores between them according to how well each is doing. Every
+ * worker thread repeatedly picks a strategy, runs it for a short slice, and
+ * credits it with how far it improved the shared best schedule per CPU-second
+ * used. Strategies are mostly picked by their recent improvement rate, with a
+ * small share picked at random so that a stalled strategy can recover. The best
+ * schedule found by any strategy is pooled, and handed to improvement-based
+ * strategies as the schedule to search around
+ */
+public class PortfolioScheduler implements IScheduler {
+	// The share of slices given to a strategy picked at random
+	private static final double EXPLORATION_RATE = 0.1;
+	// How much the latest slice counts towards a strategy's recent rate
+	private static final double RECENT_WEIGHT = 0.3;
+
+	/**
+	 * A strategy in the portfolio, and how it has been doing
+	 */
+	public static class Strategy {
+		private final String name;
+		private final Supplier<Scheduler> factory;
+		private int plays = 0;
+		private int recorded = 0;
+		private double recentRate = 0;
+
+		/**
+		 * Creates a strategy
+		 * 
+		 * @param name    the name to report the strategy under
+		 * @param factory creates the strategy's scheduler; each worker thread gets
+		 *                its own
+		 */
+		public Strategy(String name, Supplier<Scheduler> factory) {
+			this.name = name;
+			this.factory = factory;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Returns how many slices of the strategy have been started in the
+		 * current run
+		 * 
+		 * @return the number of slices started
+		 */
+		public synchronized int getPlays() {
+			return plays;
+		}
+
+		/**
+		 * Returns the strategy's recent improvement of the best score per
+		 * CPU-second
+		 * 
+		 * @return the recent improvement rate
+		 */
+		public synchronized double getRecentRate() {
+			return recentRate;
+		}
+
+		synchronized void play() {
+			plays++;
+		}
+
+		synchronized void record(long improvement, long cpuNanos) {
+			double rate = improvement / Math.max(cpuNanos / 1e9, 1e-3);
+			recentRate = recorded == 0 ? rate : (1 - RECENT_WEIGHT) * recentRate + RECENT_WEIGHT * rate;
+			recorded++;
+		}
+
+		synchronized void reset() {
+			plays = 0;
+			recorded = 0;
+			recentRate = 0;
+		}
+	}
+
+	private final List<Strategy> strategies;
+	private final int threads;
+	private final Random random = new Random();
+	private final List<Scheduler> running = new ArrayList<>();
+	private long timeBudget = 1000 * 100;
+	private int sliceIterations = 20;
+	private Schedule bestSchedule;
+	private long bestSchedulePoints;
+	private volatile boolean stopped = false;
+
+	/**
+	 * Creates a portfolio of the random-restart, greedy and improvement
+	 * strategies, with one worker per available core
+	 */
+	public PortfolioScheduler() {
+		this(defaultStrategies(), Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a portfolio of the given strategies
+	 * 
+	 * @param strategies the strategies to share the workers between
+	 * @param threads    the number of worker threads
+	 */
+	public PortfolioScheduler(List<Strategy> strategies, int threads) {
+		this.strategies = strategies;
+		this.threads = threads;
+	}
+
+	private static List<Strategy> defaultStrategies() {
+		List<Strategy> strategies = new ArrayList<>();
+		strategies.add(new Strategy("random", new Supplier<Scheduler>() {
+			@Override
+			public Scheduler get() {
+				return new Scheduler();
+			}
+		}));
+		strategies.add(new Strategy("greedy", new Supplier<Scheduler>() {
+			@Override
+			public Scheduler get() {
+				return new GreedyScheduler();
+			}
+		}));
+		strategies.add(new Strategy("improvement", new Supplier<Scheduler>() {
+			@Override
+			public Scheduler get() {
+				return new ImprovementScheduler();
+			}
+		}));
+		return strategies;
+	}
+
+	/**
+	 * Sets how long generateSchedule() keeps searching before returning the best
+	 * schedule found
+	 * 
+	 * @param timeBudget the search time in milliseconds
+	 */
+	public void setTimeBudget(long timeBudget) {
+		this.timeBudget = timeBudget;
+	}
+
+	/**
+	 * Sets how many candidates a strategy builds each time it is picked
+	 * 
+	 * @param sliceIterations the number of candidates per slice
+	 */
+	public void setSliceIterations(int sliceIterations) {
+		this.sliceIterations = sliceIterations;
+	}
+
+	/**
+	 * Returns the strategies in the portfolio, with how they have been doing
+	 * 
+	 * @return the portfolio's strategies
+	 */
+	public List<Strategy> getStrategies() {
+		return strategies;
+	}
+
+	/**
+	 * Returns the score of the schedule returned by the last call to
+	 * generateSchedule()
+	 * 
+	 * @return the best score found, lower being better
+	 */
+	public synchronized long getBestSchedulePoints() {
+		return bestSchedulePoints;
+	}
+
+	@Override
+	public Schedule generateSchedule(final IAircraftDAO arg0, final ICrewDAO arg1, final IRouteDAO arg2,
+			final IPassengerNumbersDAO arg3, final LocalDate arg4, final LocalDate arg5) {
+		synchronized (this) {
+			bestSchedule = null;
+			bestSchedulePoints = Long.MAX_VALUE;
+		}
+		synchronized (running) {
+			running.clear();
+		}
+		// each run learns afresh which strategies suit its data
+		for (Strategy strategy : strategies) {
+			strategy.reset();
+		}
+		stopped = false;
+		final long deadline = System.currentTimeMillis() + timeBudget;
+
+		ExecutorService workers = Executors.newFixedThreadPool(threads);
+		for (int i = 0; i < threads; i++) {
+			workers.execute(new Runnable() {
+				@Override
+				public void run() {
+					work(deadline, arg0, arg1, arg2, arg3, arg4, arg5);
+				}
+			});
+		}
+		workers.shutdown();
+		try {
+			workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			stop();
+			Thread.currentThread().interrupt();
+		}
+		synchronized (this) {
+			return bestSchedule;
+		}
+	}
+
+	/**
+	 * Runs slices of the strategies on the calling thread until the deadline
+	 */
+	private void work(long deadline, IAircraftDAO aircraft, ICrewDAO crew, IRouteDAO routes,
+			IPassengerNumbersDAO passengerNumbers, LocalDate start, LocalDate end) {
+		ThreadMXBean cpu = ManagementFactory.getThreadMXBean();
+		boolean cpuTimed = cpu.isCurrentThreadCpuTimeSupported();
+		Scheduler[] schedulers = new Scheduler[strategies.size()];
+
+		while (!stopped && System.currentTimeMillis() < deadline) {
+			int picked = pickStrategy();
+			if (schedulers[picked] == null) {
+				schedulers[picked] = strategies.get(picked).factory.get();
+				synchronized (running) {
+					schedulers[picked].setSeed(random.nextLong());
+					schedulers[picked].setVerbose(false);
+					running.add(schedulers[picked]);
+				}
+			}
+			Scheduler scheduler = schedulers[picked];
+
+			long pointsBefore;
+			synchronized (this) {
+				pointsBefore = bestSchedulePoints;
+				if (scheduler instanceof ImprovementScheduler) {
+					((ImprovementScheduler) scheduler).setIncumbent(bestSchedule);
+				}
+			}
+			scheduler.setIterationLimit(sliceIterations);
+			scheduler.setPointsToBeat(pointsBefore);
+			scheduler.setTimeBudget(Math.max(1, deadline - System.currentTimeMillis()));
+
+			long startTime = cpuTimed ? cpu.getCurrentThreadCpuTime() : System.nanoTime();
+			Schedule schedule = scheduler.generateSchedule(aircraft, crew, routes, passengerNumbers, start, end);
+			long used = (cpuTimed ? cpu.getCurrentThreadCpuTime() : System.nanoTime()) - startTime;
+
+			long improvement = 0;
+			synchronized (this) {
+				if (schedule != null && scheduler.getBestSchedulePoints() < bestSchedulePoints) {
+					bestSchedule = schedule;
+					bestSchedulePoints = scheduler.getBestSchedulePoints();
+					// the very first schedule found is not credited as an improvement
+					if (pointsBefore != Long.MAX_VALUE) {
+						improvement = pointsBefore - bestSchedulePoints;
+					}
+				}
+			}
+			strategies.get(picked).record(improvement, used);
+		}
+	}
+
+	/**
+	 * Picks the strategy for the next slice: any strategy not yet tried, else
+	 * usually the one with the best recent rate, sometimes one at random. The
+	 * strategy counts as played as soon as it is picked, so workers starting
+	 * together spread over the untried strategies
+	 */
+	private int pickStrategy() {
+		synchronized (random) {
+			int picked = -1;
+			for (int i = 0; i < strategies.size() && picked < 0; i++) {
+				if (strategies.get(i).getPlays() == 0) {
+					picked = i;
+				}
+			}
+			if (picked < 0 && random.nextDouble() < EXPLORATION_RATE) {
+				picked = random.nextInt(strategies.size());
+			}
+			if (picked < 0) {
+				picked = 0;
+				for (int i = 1; i < strategies.size(); i++) {
+					if (strategies.get(i).getRecentRate() > strategies.get(picked).getRecentRate()) {
+						picked = i;
+					}
+				}
+			}
+			strategies.get(picked).play();
+			return picked;
+		}
+	}
+
+	@Override
+	public void setSchedulerRunner(SchedulerRunner arg0) {
+
+	}
+
+	@Override
+	public void stop() {
+		stopped = true;
+		synchronized (running) {
+			for (Scheduler scheduler : running) {
+				scheduler.stop();
+			}
+		}
+	}
+}
@@ -6,8 +6,10 @@ import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.format.TextStyle;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.Objects;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -22,10 +24,28 @@ import baseclasses.Route;
 
 /**
  * The RouteDAO parses XML files of route information, each route specifying
- * where the airline flies from, to, and on which day of the week
+ * where the airline flies from, to, and on which day of the week.
  */
 public class RouteDAO implements IRouteDAO {
-	private List<Route> routes = new ArrayList<Route>();
+	private volatile List<Route> routes = Collections.emptyList();
+	// Which routes came from which file, so a changed file can be diffed
+	private SourceRecords<Route> sources = new SourceRecords<Route>() {
+		@Override
+		String keyOf(Route r) {
+			return r.getFlightNumber() + " " + r.getDayOfWeek();
+		}
+
+		@Override
+		boolean sameDetails(Route a, Route b) {
+			return Objects.equals(a.getDepartureTime(), b.getDepartureTime())
+					&& Objects.equals(a.getDepartureAirport(), b.getDepartureAirport())
+					&& Objects.equals(a.getDepartureAirportCode(), b.getDepartureAirportCode())
+					&& Objects.equals(a.getArrivalTime(), b.getArrivalTime())
+					&& Objects.equals(a.getArrivalAirport(), b.getArrivalAirport())
+					&& Objects.equals(a.getArrivalAirportCode(), b.getArrivalAirportCode())
+					&& Objects.equals(a.getDuration(), b.getDuration());
+		}
+	};
 
 	/**
 	 * Finds all flights that depart on the specified day of the week
@@ -133,7 +153,43 @@ public class RouteDAO implements IRouteDAO {
 	 *                              indicates the underlying exception
 	 */
 	@Override
-	public void loadRouteData(Path arg0) throws DataLoadingException {
+	public synchronized void loadRouteData(Path arg0) throws DataLoadingException {
+		List<Route> loaded = new ArrayList<Route>(routes);
+		List<Route> parsed = parseRouteData(arg0);
+		loaded.addAll(parsed);
+		sources.loaded(arg0, parsed);
+		routes = Collections.unmodifiableList(loaded);
+	}
+
+	/**
+	 * Re-reads a file that was loaded before and applies only what changed in it:
+	 * new routes are added, routes no longer in the file are removed, and routes
+	 * whose details changed are replaced. A route is identified by its flight
+	 * number and day of the week
+	 * 
+	 * @param p A Path pointing to the file to re-read
+	 * @return the number of routes added, removed or replaced
+	 * @throws DataLoadingException if the file cannot be read; the currently
+	 *                              loaded routes are then left untouched
+	 */
+	public synchronized int refreshRouteData(Path p) throws DataLoadingException {
+		List<Route> refreshed = new ArrayList<Route>();
+		int changes = sources.refresh(p, routes, parseRouteData(p), refreshed);
+		if (changes > 0) {
+			routes = Collections.unmodifiableList(refreshed);
+		}
+		return changes;
+	}
+
+	/**
+	 * Reads every route in the specified XML file
+	 * 
+	 * @param p A Path pointing to the file from which data could be loaded
+	 * @return the routes in the file, in file order
+	 * @throws DataLoadingException if anything goes wrong
+	 */
+	static List<Route> parseRouteData(Path arg0) throws DataLoadingException {
+		List<Route> loaded = new ArrayList<Route>();
 		try {
 			DocumentBuilder db = DocumentBuilderFactory.newInstance().newDocumentBuilder();
 			Document document = db.parse(arg0.toString());
@@ -166,20 +222,22 @@ public class RouteDAO implements IRouteDAO {
 						route.setDuration(Duration.parse(childNode.getChildNodes().item(0).getNodeValue()));
 					}
 				}
-				routes.add(route);
+				loaded.add(route);
 			}
 
 		} catch (Exception e) {
 			throw new DataLoadingException(e);
 		}
+		return loaded;
 	}
 
 	/**
 	 * Unloads all of the crew currently loaded, ready to start again if needed
 	 */
 	@Override
-	public void reset() {
-		routes.clear();
+	public synchronized void reset() {
+		routes = Collections.emptyList();
+		sources.reset();
 
 	}
 
@@ -0,0 +1,174 @@
+package solution;
+
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import baseclasses.IAircraftDAO;
+import baseclasses.ICrewDAO;
+import baseclasses.IPassengerNumbersDAO;
+import baseclasses.IRouteDAO;
+
+/**
+ * The ScaleBenchmark generates a synthetic dataset of the requested size, runs
+ * the full load and scheduling pipeline on it, and writes a JSON report of how
+ * long each step took, the peak heap it needed, how many candidates a second
+ * the scheduler built and how the best score improved over time. Reports from
+ * different runs and versions can be compared to spot scaling regressions.
+ * 
+ * Arguments: output directory, aircraft, crew, weekly routes, airports, days to
+ * schedule, seconds to search, and optionally the seed (default 1). For
+ * example "bench 1000 20000 100000 200 7 60"
+ */
+public class ScaleBenchmark {
+
+	public static void main(String[] args) {
+		try {
+			Path directory = Paths.get(args[0]);
+			int tails = Integer.parseInt(args[1]);
+			int crewSize = Integer.parseInt(args[2]);
+			int routeCount = Integer.parseInt(args[3]);
+			int airports = Integer.parseInt(args[4]);
+			int days = Integer.parseInt(args[5]);
+			long seconds = Long.parseLong(args[6]);
+			long seed = args.length > 7 ? Long.parseLong(args[7]) : 1;
+
+			LocalDate start = LocalDate.of(2020, 7, 6);
+			LocalDate end = start.plusDays(days - 1);
+			Path aircraftFile = directory.resolve("schedule_aircraft.csv");
+			Path crewFile = directory.resolve("schedule_crew.json");
+			Path routeFile = directory.resolve("schedule_routes.xml");
+			Path passengerNumbersFile = directory.resolve("schedule_passengers.db");
+
+			JSONObject report = new JSONObject();
+			JSONObject parameters = new JSONObject();
+			parameters.put("aircraft", tails);
+			parameters.put("crew", crewSize);
+			parameters.put("weeklyRoutes", routeCount);
+			parameters.put("airports", airports);
+			parameters.put("days", days);
+			parameters.put("searchSeconds", seconds);
+			parameters.put("seed", seed);
+			report.put("parameters", parameters);
+
+			// generate
+			Files.createDirectories(directory);
+			long startTime = System.nanoTime();
+			SyntheticDataGenerator generator = new SyntheticDataGenerator(seed, airports);
+			generator.writeAircraft(aircraftFile, tails);
+			generator.writeCrew(crewFile, crewSize);
+			List<String> flightDays = generator.writeRoutes(routeFile, routeCount);
+			generator.writePassengerNumbers(passengerNumbersFile, flightDays, start, end);
+			report.put("generateMillis", (System.nanoTime() - startTime) / 1000000);
+
+			// load
+			System.gc();
+			resetPeakHeap();
+			JSONObject load = new JSONObject();
+			IAircraftDAO aircraft = new AircraftDAO();
+			// the AircraftDAO prints a line per aircraft, which would time the
+			// console rather than the load, so its output is discarded here
+			PrintStream console = System.out;
+			System.setOut(new PrintStream(new OutputStream() {
+				@Override
+				public void write(int b) {
+				}
+
+				@Override
+				public void write(byte[] b, int off, int len) {
+				}
+			}));
+			try {
+				startTime = System.nanoTime();
+				aircraft.loadAircraftData(aircraftFile);
+				load.put("aircraftMillis", (System.nanoTime() - startTime) / 1000000);
+			} finally {
+				System.setOut(console);
+			}
+			ICrewDAO crew = new CrewDAO();
+			startTime = System.nanoTime();
+			crew.loadCrewData(crewFile);
+			load.put("crewMillis", (System.nanoTime() - startTime) / 1000000);
+			IRouteDAO routes = new RouteDAO();
+			startTime = System.nanoTime();
+			routes.loadRouteData(routeFile);
+			load.put("routeMillis", (System.nanoTime() - startTime) / 1000000);
+			IPassengerNumbersDAO passengerNumbers = new PassengerNumbersDAO();
+			startTime = System.nanoTime();
+			passengerNumbers.loadPassengerNumbersData(passengerNumbersFile);
+			load.put("passengerNumbersMillis", (System.nanoTime() - startTime) / 1000000);
+			load.put("peakHeapBytes", peakHeap());
+			report.put("load", load);
+
+			// schedule
+			resetPeakHeap();
+			Scheduler scheduler = new Scheduler();
+			scheduler.setSeed(seed);
+			scheduler.setTimeBudget(seconds * 1000);
+			scheduler.setVerbose(false);
+			startTime = System.nanoTime();
+			scheduler.generateSchedule(aircraft, crew, routes, passengerNumbers, start, end);
+			long scheduleMillis = (System.nanoTime() - startTime) / 1000000;
+
+			JSONObject schedule = new JSONObject();
+			schedule.put("millis", scheduleMillis);
+			schedule.put("iterations", scheduler.getIterations());
+			schedule.put("iterationsPerSecond", scheduler.getIterations() * 1000.0 / Math.max(1, scheduleMillis));
+			schedule.put("bestScore", scheduler.getBestSchedulePoints());
+			schedule.put("peakHeapBytes", peakHeap());
+			JSONArray progress = new JSONArray();
+			for (long[] improvement : scheduler.getProgress()) {
+				JSONObject point = new JSONObject();
+				point.put("millis", improvement[0]);
+				point.put("score", improvement[1]);
+				progress.put(point);
+			}
+			schedule.put("progress", progress);
+			report.put("schedule", schedule);
+
+			String json = report.toString(2);
+			BufferedWriter writer = Files.newBufferedWriter(directory.resolve("report.json"));
+			try {
+				writer.write(json);
+			} finally {
+				writer.close();
+			}
+			System.out.println(json);
+
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	private static void resetPeakHeap() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+			}
+		}
+	}
+
+	/**
+	 * Returns the sum of the peak usage of every heap pool since the last reset
+	 */
+	private static long peakHeap() {
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		return peak;
+	}
+}
@@ -0,0 +1,173 @@
+package solution;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import baseclasses.Aircraft;
+import baseclasses.CabinCrew;
+import baseclasses.FlightInfo;
+import baseclasses.IAircraftDAO;
+import baseclasses.ICrewDAO;
+import baseclasses.IRouteDAO;
+import baseclasses.Pilot;
+import baseclasses.Schedule;
+
+/**
+ * The ScheduleReader streams back schedules written by the ScheduleWriter in
+ * the binary format, one flight at a time, through one reusable buffer. It must
+ * be given DAOs holding the same data the schedule was written against, which
+ * it checks against the fingerprint in the schedule's header. A
+ * stored schedule can be rebuilt into a Schedule to warm start a search, for
+ * example as the incumbent of an ImprovementScheduler
+ */
+public class ScheduleReader {
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Receives each flight's allocation as it is read
+	 */
+	public interface AllocationHandler {
+		void allocation(int flightNumber, LocalDate date, Aircraft aircraft, Pilot captain, Pilot firstOfficer,
+				List<CabinCrew> cabinCrew);
+	}
+
+	private final List<Aircraft> aircraft;
+	private final List<Pilot> pilots;
+	private final List<CabinCrew> cabinCrew;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private byte[] fingerprint;
+
+	/**
+	 * Creates a reader for schedules written against the given data
+	 * 
+	 * @param aircraftDAO the aircraft the schedules use
+	 * @param crewDAO     the crew the schedules use
+	 */
+	public ScheduleReader(IAircraftDAO aircraftDAO, ICrewDAO crewDAO) {
+		aircraft = aircraftDAO.getAllAircraft();
+		pilots = crewDAO.getAllPilots();
+		cabinCrew = crewDAO.getAllCabinCrew();
+	}
+
+	/**
+	 * Reads every flight in a binary schedule file
+	 * 
+	 * @param p       the file to read
+	 * @param handler receives each flight's allocation
+	 * @throws IOException if the file cannot be read, or was written against
+	 *                     different data
+	 */
+	public void read(Path p, AllocationHandler handler) throws IOException {
+		FileChannel channel = FileChannel.open(p, StandardOpenOption.READ);
+		try {
+			read(channel, handler);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Reads every flight in a binary schedule from a channel
+	 * 
+	 * @param channel the channel to read from; it is left open
+	 * @param handler receives each flight's allocation
+	 * @throws IOException if the channel cannot be read, or the schedule was
+	 *                     written against different data
+	 */
+	public synchronized void read(ReadableByteChannel channel, AllocationHandler handler) throws IOException {
+		buffer.clear();
+		buffer.flip();
+		if (readInt(channel) != ScheduleWriter.MAGIC || readInt(channel) != ScheduleWriter.VERSION) {
+			throw new IOException("Not a binary schedule");
+		}
+		if (fingerprint == null) {
+			fingerprint = ScheduleWriter.fingerprintOf(aircraft, pilots, cabinCrew);
+		}
+		int aircraftCount = readInt(channel);
+		int pilotCount = readInt(channel);
+		int cabinCrewCount = readInt(channel);
+		byte[] written = new byte[fingerprint.length];
+		fill(channel, written.length);
+		buffer.get(written);
+		if (aircraftCount != aircraft.size() || pilotCount != pilots.size() || cabinCrewCount != cabinCrew.size()
+				|| !Arrays.equals(written, fingerprint)) {
+			throw new IOException("Schedule was written against different aircraft or crew data");
+		}
+		int flights = readInt(channel);
+		try {
+			for (int f = 0; f < flights; f++) {
+				int flightNumber = readInt(channel);
+				LocalDate date = LocalDate.ofEpochDay(readInt(channel));
+				Aircraft a = aircraft.get(readInt(channel));
+				Pilot captain = pilots.get(readInt(channel));
+				Pilot firstOfficer = pilots.get(readInt(channel));
+				int crewCount = readInt(channel);
+				List<CabinCrew> crew = new ArrayList<>(crewCount);
+				for (int c = 0; c < crewCount; c++) {
+					crew.add(cabinCrew.get(readInt(channel)));
+				}
+				handler.allocation(flightNumber, date, a, captain, firstOfficer, crew);
+			}
+		} catch (IndexOutOfBoundsException e) {
+			throw new IOException("Schedule refers to aircraft or crew that are not loaded", e);
+		}
+	}
+
+	/**
+	 * Rebuilds a stored schedule over a date range. Stored flights outside the
+	 * range, or whose allocation no longer fits, are left unallocated, so the
+	 * result may be partial; no flight is ever left half allocated
+	 * 
+	 * @param p      the binary schedule file to read
+	 * @param routes the routes to schedule
+	 * @param start  the first date of the schedule to build
+	 * @param end    the last date of the schedule to build
+	 * @return the rebuilt schedule
+	 * @throws IOException if the file cannot be read, or was written against
+	 *                     different data
+	 */
+	public Schedule readSchedule(Path p, IRouteDAO routes, LocalDate start, LocalDate end) throws IOException {
+		final Schedule schedule = new Schedule(routes, start, end);
+		final HashMap<String, FlightInfo> flights = AllocationFile.flightsOf(schedule);
+		read(p, new AllocationHandler() {
+			@Override
+			public void allocation(int flightNumber, LocalDate date, Aircraft a, Pilot captain, Pilot firstOfficer,
+					List<CabinCrew> crew) {
+				FlightInfo flight = flights.get(AllocationFile.keyOf(flightNumber, date));
+				if (flight != null) {
+					AllocationFile.allocate(schedule, flight, a, captain, firstOfficer, crew);
+				}
+			}
+		});
+		return schedule;
+	}
+
+	private int readInt(ReadableByteChannel channel) throws IOException {
+		fill(channel, 4);
+		return buffer.getInt();
+	}
+
+	/**
+	 * Makes sure at least the given number of bytes are waiting in the buffer
+	 */
+	private void fill(ReadableByteChannel channel, int bytes) throws IOException {
+		if (buffer.remaining() < bytes) {
+			buffer.compact();
+			while (buffer.position() < bytes) {
+				if (channel.read(buffer) < 0) {
+					throw new IOException("Schedule ends unexpectedly");
+				}
+			}
+			buffer.flip();
+		}
+	}
+}
@@ -0,0 +1,219 @@
+package solution;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import baseclasses.Aircraft;
+import baseclasses.CabinCrew;
+import baseclasses.FlightInfo;
+import baseclasses.IAircraftDAO;
+import baseclasses.ICrewDAO;
+import baseclasses.Pilot;
+import baseclasses.Schedule;
+
+/**
+ * The ScheduleWriter streams the completed allocations of a schedule straight
+ * from the schedule into a channel, in either a compact binary format or CSV.
+ * Binary writes share one reusable buffer; each CSV write has a buffer of its
+ * own, so writes to slow channels such as HTTP responses never wait on each
+ * other.
+ * 
+ * The binary format refers to aircraft and crew by dense ids: their positions
+ * in getAllAircraft(), getAllPilots() and getAllCabinCrew() of the DAOs given
+ * to the writer. It can only be read back against the same data, which
+ * ScheduleReader checks using the fingerprint in the header: a hash of every
+ * tail code and crew name in id order. After the header (magic, version,
+ * number of aircraft, pilots and cabin crew, the 32 byte fingerprint, number of
+ * flights), each flight is written as its flight number, epoch day, aircraft,
+ * captain and first officer ids, the number of cabin crew and their ids, all as
+ * ints. The CSV uses the same flight lines as the AllocationFile
+ */
+public class ScheduleWriter {
+	static final int MAGIC = 0x46534348;
+	static final int VERSION = 2;
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final List<Aircraft> aircraft;
+	private final List<Pilot> pilots;
+	private final List<CabinCrew> cabinCrew;
+	private final IdentityHashMap<Object, Integer> ids = new IdentityHashMap<>();
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private byte[] fingerprint;
+
+	/**
+	 * Creates a writer for schedules built from the given data
+	 * 
+	 * @param aircraftDAO the aircraft the schedules use
+	 * @param crewDAO     the crew the schedules use
+	 */
+	public ScheduleWriter(IAircraftDAO aircraftDAO, ICrewDAO crewDAO) {
+		aircraft = aircraftDAO.getAllAircraft();
+		pilots = crewDAO.getAllPilots();
+		cabinCrew = crewDAO.getAllCabinCrew();
+		for (int i = 0; i < aircraft.size(); i++) {
+			ids.put(aircraft.get(i), i);
+		}
+		for (int i = 0; i < pilots.size(); i++) {
+			ids.put(pilots.get(i), i);
+		}
+		for (int i = 0; i < cabinCrew.size(); i++) {
+			ids.put(cabinCrew.get(i), i);
+		}
+	}
+
+	/**
+	 * Writes a schedule to a file in the binary format
+	 * 
+	 * @param schedule the schedule to write
+	 * @param p        the file to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public void writeBinary(Schedule schedule, Path p) throws IOException {
+		FileChannel channel = FileChannel.open(p, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			writeBinary(schedule, channel);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Writes a schedule to a channel in the binary format
+	 * 
+	 * @param schedule the schedule to write
+	 * @param channel  the channel to write to; it is left open
+	 * @throws IOException if the channel cannot be written
+	 */
+	public synchronized void writeBinary(Schedule schedule, WritableByteChannel channel) throws IOException {
+		List<FlightInfo> flights = schedule.getCompletedAllocations();
+		buffer.clear();
+		buffer.putInt(MAGIC).putInt(VERSION);
+		buffer.putInt(aircraft.size()).putInt(pilots.size()).putInt(cabinCrew.size());
+		if (fingerprint == null) {
+			fingerprint = fingerprintOf(aircraft, pilots, cabinCrew);
+		}
+		buffer.put(fingerprint);
+		buffer.putInt(flights.size());
+		for (FlightInfo flight : flights) {
+			List<CabinCrew> crew = schedule.getCabinCrewOf(flight);
+			ensureSpace(channel, buffer, 4 * (6 + crew.size()));
+			buffer.putInt(flight.getFlight().getFlightNumber());
+			buffer.putInt((int) flight.getDepartureDateTime().toLocalDate().toEpochDay());
+			buffer.putInt(idOf(schedule.getAircraftFor(flight)));
+			buffer.putInt(idOf(schedule.getCaptainOf(flight)));
+			buffer.putInt(idOf(schedule.getFirstOfficerOf(flight)));
+			buffer.putInt(crew.size());
+			for (CabinCrew c : crew) {
+				buffer.putInt(idOf(c));
+			}
+		}
+		flush(channel, buffer);
+	}
+
+	/**
+	 * Writes a schedule to a file as CSV, naming aircraft by tail code and crew
+	 * by name
+	 * 
+	 * @param schedule the schedule to write
+	 * @param p        the file to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public void writeCsv(Schedule schedule, Path p) throws IOException {
+		FileChannel channel = FileChannel.open(p, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			writeCsv(schedule, channel);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Writes a schedule to a channel as CSV, naming aircraft by tail code and crew
+	 * by name
+	 * 
+	 * @param schedule the schedule to write
+	 * @param channel  the channel to write to; it is left open
+	 * @throws IOException if the channel cannot be written
+	 */
+	public void writeCsv(Schedule schedule, WritableByteChannel channel) throws IOException {
+		ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE);
+		putLine(channel, out, "FlightNumber,Date,TailCode,Captain,FirstOfficer,CabinCrew");
+		StringBuilder line = new StringBuilder();
+		for (FlightInfo flight : schedule.getCompletedAllocations()) {
+			line.setLength(0);
+			AllocationFile.appendAllocation(line, schedule, flight);
+			putLine(channel, out, line);
+		}
+		flush(channel, out);
+	}
+
+	private int idOf(Object o) throws IOException {
+		Integer id = ids.get(o);
+		if (id == null) {
+			throw new IOException("Schedule uses aircraft or crew not loaded in the DAOs given to the writer");
+		}
+		return id;
+	}
+
+	/**
+	 * Returns the fingerprint of the records ids refer to: a hash of every tail
+	 * code and crew name, in id order
+	 * 
+	 * @param aircraft  the aircraft, in id order
+	 * @param pilots    the pilots, in id order
+	 * @param cabinCrew the cabin crew, in id order
+	 * @return the 32 byte fingerprint
+	 * @throws IOException if the fingerprint cannot be computed
+	 */
+	static byte[] fingerprintOf(List<Aircraft> aircraft, List<Pilot> pilots, List<CabinCrew> cabinCrew)
+			throws IOException {
+		List<String> keys = new ArrayList<>(aircraft.size() + pilots.size() + cabinCrew.size());
+		for (Aircraft a : aircraft) {
+			keys.add(a.getTailCode());
+		}
+		for (Pilot p : pilots) {
+			keys.add(AllocationFile.nameOf(p));
+		}
+		for (CabinCrew c : cabinCrew) {
+			keys.add(AllocationFile.nameOf(c));
+		}
+		return DatasetFingerprint.ofKeys(keys);
+	}
+
+	private static void putLine(WritableByteChannel channel, ByteBuffer out, CharSequence line) throws IOException {
+		byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+		ensureSpace(channel, out, bytes.length);
+		if (bytes.length > out.capacity()) {
+			ByteBuffer wrapped = ByteBuffer.wrap(bytes);
+			while (wrapped.hasRemaining()) {
+				channel.write(wrapped);
+			}
+		} else {
+			out.put(bytes);
+		}
+	}
+
+	private static void ensureSpace(WritableByteChannel channel, ByteBuffer out, int bytes) throws IOException {
+		if (out.remaining() < bytes) {
+			flush(channel, out);
+		}
+	}
+
+	private static void flush(WritableByteChannel channel, ByteBuffer out) throws IOException {
+		out.flip();
+		while (out.hasRemaining()) {
+			channel.write(out);
+		}
+		out.clear();
+	}
+}
@@ -1,12 +1,17 @@
 package solution;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import baseclasses.Aircraft;
 import baseclasses.CabinCrew;
+import baseclasses.Crew;
 import baseclasses.FlightInfo;
 import baseclasses.IAircraftDAO;
 import baseclasses.ICrewDAO;
@@ -21,14 +26,223 @@ import baseclasses.qualitypointscalculators.MonthlyWorkingHoursCalculator;
 import baseclasses.qualitypointscalculators.RestAfterLandingWrongAirportCalculator;
 
 public class Scheduler implements IScheduler {
+	// The weights the pruning bound charges. QualityScoreCalculator does not
+	// expose its own, so these are the smallest non-zero charges it could make:
+	// a point per passenger over the seats, a point per full hour over the
+	// monthly limit. Every scored candidate checks them against the real score,
+	// and pruning is switched off if they ever overestimate it
+	private static final long OVERFLOW_POINTS_PER_PASSENGER = 1;
+	private static final long OVERTIME_POINTS_PER_HOUR = 1;
+	// The monthly limit the tracker steers crew choice by, and the bound counts
+	// overtime from. Should the calculator's real limit be higher, the bound
+	// overestimates, and the same check switches pruning off
+	private static final long MONTHLY_LIMIT_MINUTES = 100 * 60;
+
+	// Reasons a flight is left unallocated, indexing the failure counters
+	private static final int NO_AIRCRAFT = 0;
+	private static final int NO_CABIN_CREW = 1;
+	private static final int NO_CAPTAIN = 2;
+	private static final int NO_FIRST_OFFICER = 3;
+	private static final int REJECTED = 4;
+	private static final String[] FAILURE_NAMES = { "no aircraft", "no cabin crew", "no captain",
+			"no first officer", "rejected by schedule" };
+
 	Random r = new Random();
 	List<FlightInfo> flights;
+	boolean boundPruning = false;
+	int prunedCandidates = 0;
+	int discardedCandidates = 0;
+	// set once a flight of the candidate being built is left half allocated
+	boolean candidateDiscarded = false;
+	long pointsToBeat = 999999999999l;
+	long timeBudget = 1000 * 100;
+	int iterationLimit = 0;
+	long bestPoints;
+	int iterations = 0;
+	List<long[]> progress = new ArrayList<long[]>();
+	boolean verbose = true;
+	volatile boolean stopped = false;
+	ScoreCache scoreCache = new ScoreCache(0);
+	int unallocatedFlights = 0;
+	int[] failures = new int[FAILURE_NAMES.length];
+	List<CabinCrew> chosenCabinCrew = new ArrayList<CabinCrew>();
+
+	/**
+	 * Sets how long generateSchedule() keeps searching before returning the best
+	 * schedule found
+	 * 
+	 * @param timeBudget the search time in milliseconds
+	 */
+	public void setTimeBudget(long timeBudget) {
+		this.timeBudget = timeBudget;
+	}
+
+	/**
+	 * Sets the most candidates generateSchedule() builds before returning, so a
+	 * caller can search in short slices and act between them
+	 * 
+	 * @param iterationLimit the most candidates to build, or 0 for no limit
+	 */
+	public void setIterationLimit(int iterationLimit) {
+		this.iterationLimit = iterationLimit;
+	}
+
+	/**
+	 * Returns the score of the schedule returned by the last call to
+	 * generateSchedule()
+	 * 
+	 * @return the best score found, lower being better
+	 */
+	public long getBestSchedulePoints() {
+		return bestPoints;
+	}
+
+	/**
+	 * Returns the number of candidates built by the last call to
+	 * generateSchedule(), including those abandoned by bound pruning
+	 * 
+	 * @return the number of candidates built
+	 */
+	public int getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * Returns how the best score improved during the last call to
+	 * generateSchedule(): one entry per improvement, holding the milliseconds
+	 * since the search started and the new best score
+	 * 
+	 * @return the improvements, in the order they happened
+	 */
+	public List<long[]> getProgress() {
+		return progress;
+	}
+
+	/**
+	 * Turns printing the best score after every candidate on or off
+	 * 
+	 * @param verbose true to print the best score after every candidate
+	 */
+	public void setVerbose(boolean verbose) {
+		this.verbose = verbose;
+	}
+
+	/**
+	 * Seeds the random choices made while building candidates, so that a run can
+	 * be repeated
+	 * 
+	 * @param seed the seed for the random number generator
+	 */
+	public void setSeed(long seed) {
+		r = new Random(seed);
+	}
+
+	/**
+	 * Turns branch-and-bound pruning on or off. When on, a running lower bound on
+	 * the penalty of the candidate being built is kept, and the candidate is
+	 * abandoned as soon as that bound reaches the best score found so far
+	 * 
+	 * @param boundPruning true to abandon hopeless candidates early
+	 */
+	public void setBoundPruning(boolean boundPruning) {
+		this.boundPruning = boundPruning;
+	}
+
+	/**
+	 * Sets the score of a schedule the caller already has, such as the best found
+	 * by earlier slices of a search. Candidates are pruned against it from the
+	 * start, and generateSchedule() returns null if no candidate beats it
+	 * 
+	 * @param pointsToBeat the score to beat, lower being better
+	 */
+	public void setPointsToBeat(long pointsToBeat) {
+		this.pointsToBeat = pointsToBeat;
+	}
+
+	/**
+	 * Returns the number of candidates abandoned by bound pruning during the last
+	 * call to generateSchedule()
+	 * 
+	 * @return the number of candidates abandoned before being scored
+	 */
+	public int getPrunedCandidates() {
+		return prunedCandidates;
+	}
+
+	/**
+	 * Returns the number of candidates dropped during the last call to
+	 * generateSchedule() because the schedule rejected a flight part way through
+	 * allocating it. A Schedule cannot take an allocation back, so such a
+	 * candidate is never scored or returned
+	 * 
+	 * @return the number of candidates dropped
+	 */
+	public int getDiscardedCandidates() {
+		return discardedCandidates;
+	}
+
+	/**
+	 * Sets how many candidate scores are remembered, so that a candidate built
+	 * the same as one already scored is not scored again. Scores are kept from
+	 * one call of generateSchedule() to the next while the dates and the DAOs
+	 * and their sizes stay the same. Off by default, as only searches that
+	 * repeat candidates gain from it
+	 * 
+	 * @param size the most scores to remember, or 0 to score every candidate
+	 */
+	public void setScoreCacheSize(int size) {
+		scoreCache = new ScoreCache(size);
+	}
+
+	/**
+	 * Forgets every remembered score, for when data such as passenger forecasts
+	 * changed without the DAOs' sizes changing
+	 */
+	public void clearScoreCache() {
+		scoreCache.clear();
+	}
+
+	/**
+	 * Returns the number of candidates whose score was taken from the score
+	 * cache during the last call to generateSchedule()
+	 * 
+	 * @return the number of candidates not scored again
+	 */
+	public int getScoreCacheHits() {
+		return scoreCache.getHits();
+	}
+
+	/**
+	 * Returns the number of flights, over all the candidates built during the
+	 * last call to generateSchedule(), that could not be allocated and were left
+	 * for the quality score to charge for
+	 * 
+	 * @return the number of flights left unallocated
+	 */
+	public int getUnallocatedFlights() {
+		return unallocatedFlights;
+	}
+
+	/**
+	 * Returns why flights were left unallocated during the last call to
+	 * generateSchedule(), as the number of times each reason occurred. A flight
+	 * rejected by the schedule also drops its candidate
+	 * 
+	 * @return the count of each failure reason
+	 */
+	public Map<String, Integer> getFailureCounts() {
+		Map<String, Integer> counts = new LinkedHashMap<String, Integer>();
+		for (int i = 0; i < FAILURE_NAMES.length; i++) {
+			counts.put(FAILURE_NAMES[i], failures[i]);
+		}
+		return counts;
+	}
 
 	@Override
 	public Schedule generateSchedule(IAircraftDAO arg0, ICrewDAO arg1, IRouteDAO arg2, IPassengerNumbersDAO arg3,
 			LocalDate arg4, LocalDate arg5) {
 		Schedule bestSchedule = null;
-		long bestSchedulePoints = 999999999999l;
+		long bestSchedulePoints = pointsToBeat;
 		HashMap<Aircraft, String> aircraftsLocation = new HashMap<Aircraft, String>();
 		List<Aircraft> allAircrafts = arg0.getAllAircraft();
 
@@ -36,134 +250,347 @@ public class Scheduler implements IScheduler {
 			aircraftsLocation.put(a, a.getStartingPosition());
 		}
 
+		CrewStateTracker tracker = new CrewStateTracker(arg1, arg4, arg5, MONTHLY_LIMIT_MINUTES);
+		scoreCache.use(arg4, arg5, arg0, arg1, arg2, arg3, arg0.getNumberOfAircraft(), arg1.getNumberOfPilots(),
+				arg1.getNumberOfCabinCrew(), arg2.getNumberOfRoutes(), arg3.getNumberOfEntries());
+		boolean fingerprint = scoreCache.enabled();
+		prunedCandidates = 0;
+		discardedCandidates = 0;
+		unallocatedFlights = 0;
+		Arrays.fill(failures, 0);
+		stopped = false;
+		iterations = 0;
+		progress = new ArrayList<long[]>();
 		long startTime = System.currentTimeMillis();
-		while (System.currentTimeMillis() - startTime < 1000 * 100) {
+		while (System.currentTimeMillis() - startTime < timeBudget && !stopped
+				&& (iterationLimit == 0 || iterations < iterationLimit)) {
+			iterations++;
 			Schedule schedule = new Schedule(arg2, arg4, arg5);
 			flights = schedule.getRemainingAllocations();
+			beginCandidate(arg4, arg5);
+			tracker.reset();
+			if (fingerprint) {
+				scoreCache.begin();
+			}
+			long lowerBound = 0;
+			boolean pruned = false;
+			candidateDiscarded = false;
 			for (FlightInfo flight : flights) {
-				try {
-					boolean aircraftAllocated = false;
-					Aircraft aircraft = null;
-					List<Aircraft> aircrafts = new ArrayList<>();
-					for (Aircraft key : aircraftsLocation.keySet()) {
-						if (aircraftsLocation.get(key).equals(flight.getFlight().getDepartureAirportCode())) {
-							aircrafts.add(key);
-						}
-					}
+				Aircraft aircraft;
+				List<Crew> allocatedCrew;
+				boolean reused = reuseAllocation(schedule, flight);
+				if (candidateDiscarded) {
+					failures[REJECTED]++;
+					break;
+				}
 
-					while (!aircraftAllocated) {
-						if (!aircrafts.isEmpty()) {
-							aircraft = aircrafts.get(r.nextInt(aircrafts.size()));
-							if (!schedule.hasConflict(aircraft, flight)) {
-								schedule.allocateAircraftTo(aircraft, flight);
-								aircraftsLocation.put(aircraft, flight.getFlight().getArrivalAirportCode());
-								aircrafts.remove(aircraft);
-								aircraftAllocated = true;
-							} else {
-								aircrafts.remove(aircraft);
-							}
-						} else {
-							aircraft = allAircrafts.get(r.nextInt(allAircrafts.size()));
-							if (!schedule.hasConflict(aircraft, flight)) {
-								schedule.allocateAircraftTo(aircraft, flight);
-								aircraftsLocation.put(aircraft, flight.getFlight().getArrivalAirportCode());
-								aircraftAllocated = true;
-							}
-						}
+				if (reused) {
+					aircraft = schedule.getAircraftFor(flight);
+					allocatedCrew = crewOf(schedule, flight);
+				} else {
+					// choose everything first, so a flight that cannot be crewed is left unallocated
+					// rather than half allocated; the quality score charges for it
+					aircraft = chooseAircraft(schedule, flight, aircraftsLocation, allAircrafts, arg3);
+					if (aircraft == null) {
+						failures[NO_AIRCRAFT]++;
+						unallocatedFlights++;
+						continue;
 					}
-
-					List<CabinCrew> cabinCrew = arg1.findCabinCrewByTypeRating(aircraft.getTypeCode());
-					int t = 0;
-					while (t != aircraft.getCabinCrewRequired()) {
-						CabinCrew crew = null;
-						if (!cabinCrew.isEmpty()) {
-							crew = cabinCrew.get(r.nextInt(cabinCrew.size()));
-							if (!schedule.hasConflict(crew, flight)) {
-								schedule.allocateCabinCrewTo(crew, flight);
-								cabinCrew.remove(crew);
-								t += 1;
-							} else {
-								cabinCrew.remove(crew);
-							}
-						} else {
-							List<CabinCrew> restCrew = arg1.getAllCabinCrew();
-							CabinCrew crew2 = restCrew.get(r.nextInt(restCrew.size()));
-							if (!schedule.hasConflict(crew2, flight)
-									&& !schedule.getCabinCrewOf(flight).contains(crew2)) {
-								schedule.allocateCabinCrewTo(crew2, flight);
-								t += 1;
-							}
-						}
+					chosenCabinCrew.clear();
+					if (!chooseCabinCrew(schedule, flight, aircraft, arg1, tracker)) {
+						failures[NO_CABIN_CREW]++;
+						unallocatedFlights++;
+						continue;
+					}
+					Pilot captain = choosePilot(schedule, flight, aircraft, arg1, tracker, Pilot.Rank.CAPTAIN, null);
+					if (captain == null) {
+						failures[NO_CAPTAIN]++;
+						unallocatedFlights++;
+						continue;
+					}
+					Pilot firstOfficer = choosePilot(schedule, flight, aircraft, arg1, tracker,
+							Pilot.Rank.FIRST_OFFICER, captain);
+					if (firstOfficer == null) {
+						failures[NO_FIRST_OFFICER]++;
+						unallocatedFlights++;
+						continue;
 					}
 
-					boolean captainAllocated = false;
-					List<Pilot> pilots = arg1.findPilotsByTypeRating(aircraft.getTypeCode());
-					Pilot captain = null;
-					while (!captainAllocated) {
-						if (!pilots.isEmpty()) {
-							captain = pilots.get(r.nextInt(pilots.size()));
-							if (!schedule.hasConflict(captain, flight)
-									&& captain.getRank().compareTo(Pilot.Rank.CAPTAIN) == 0) {
-								schedule.allocateCaptainTo(captain, flight);
-								pilots.remove(captain);
-								captainAllocated = true;
-
-							} else {
-								pilots.remove(captain);
-							}
-						} else {
-							List<Pilot> restPilots = arg1.getAllPilots();
-							captain = restPilots.get(r.nextInt(restPilots.size()));
-							if (!schedule.hasConflict(captain, flight)) {
-								schedule.allocateCaptainTo(captain, flight);
-								captainAllocated = true;
-							}
+					// everything chosen is free, so these only fail if the schedule disagrees
+					try {
+						schedule.allocateAircraftTo(aircraft, flight);
+						for (CabinCrew crew : chosenCabinCrew) {
+							schedule.allocateCabinCrewTo(crew, flight);
 						}
-
+						schedule.allocateCaptainTo(captain, flight);
+						schedule.allocateFirstOfficerTo(firstOfficer, flight);
+						schedule.completeAllocationFor(flight);
+					} catch (Exception e) {
+						failures[REJECTED]++;
+						discardCandidate();
+						break;
 					}
+					allocatedCrew = new ArrayList<Crew>(chosenCabinCrew);
+					allocatedCrew.add(captain);
+					allocatedCrew.add(firstOfficer);
+				}
 
-					boolean pilotAllocated = false;
-					Pilot pilot = null;
-					List<Pilot> pilots2 = arg1.findPilotsByTypeRating(aircraft.getTypeCode());
-					while (!pilotAllocated) {
-						if (!pilots2.isEmpty()) {
-							pilot = pilots2.get(r.nextInt(pilots2.size()));
-							if (!schedule.hasConflict(pilot, flight) && !pilot.equals(captain)
-									&& pilot.getRank().compareTo(Pilot.Rank.FIRST_OFFICER) == 0) {
-								schedule.allocateFirstOfficerTo(pilot, flight);
-								pilots2.remove(pilot);
-								pilotAllocated = true;
-							} else {
-								pilots2.remove(pilot);
-							}
-						} else {
-							List<Pilot> restPilots = arg1.getAllPilots();
-							pilot = restPilots.get(r.nextInt(restPilots.size()));
-							if (!schedule.hasConflict(pilot, flight) && !pilot.equals(captain)) {
-								schedule.allocateFirstOfficerTo(pilot, flight);
-								pilotAllocated = true;
-							}
-						}
+				aircraftsLocation.put(aircraft, flight.getFlight().getArrivalAirportCode());
+				for (Crew c : allocatedCrew) {
+					tracker.flew(c, flight);
+				}
+				if (fingerprint) {
+					scoreCache.add(flight, aircraft, schedule.getCaptainOf(flight), schedule.getFirstOfficerOf(flight),
+							schedule.getCabinCrewOf(flight));
+				}
 
+				if (boundPruning) {
+					lowerBound += partialPenalty(flight, aircraft, allocatedCrew, arg3, tracker);
+					if (lowerBound >= bestSchedulePoints) {
+						pruned = true;
+						break;
 					}
-					schedule.completeAllocationFor(flight);
-
-				} catch (Exception e) {
-					e.printStackTrace();
 				}
 			}
-			QualityScoreCalculator calculator = new QualityScoreCalculator(arg0, arg1, arg3, schedule);
-			long score = calculator.calculateQualityScore();
+			if (candidateDiscarded) {
+				discardedCandidates++;
+				continue;
+			}
+			if (pruned) {
+				prunedCandidates++;
+				continue;
+			}
+			Long cached = scoreCache.lookup();
+			long score;
+			if (cached != null) {
+				score = cached;
+			} else {
+				QualityScoreCalculator calculator = new QualityScoreCalculator(arg0, arg1, arg3, schedule);
+				score = calculator.calculateQualityScore();
+				scoreCache.store(score);
+			}
+			if (boundPruning && score < lowerBound) {
+				// the weights overestimate the real score, so the bound cannot be trusted
+				System.err.println("Bound pruning switched off: a candidate scored " + score
+						+ " below its bound of " + lowerBound);
+				boundPruning = false;
+			}
 			if (score < bestSchedulePoints) {
 				bestSchedule = schedule;
 				bestSchedulePoints = score;
+				progress.add(new long[] { System.currentTimeMillis() - startTime, score });
 			}
 
-			System.out.println(bestSchedulePoints);
+			if (verbose) {
+				System.out.println(bestSchedulePoints);
+			}
 		}
+		bestPoints = bestSchedulePoints;
 		return bestSchedule;
 	}
 
+	/**
+	 * Called before each candidate is built. Does nothing here; strategies that
+	 * build candidates differently can override it to prepare
+	 * 
+	 * @param start the first date being scheduled
+	 * @param end   the last date being scheduled
+	 */
+	protected void beginCandidate(LocalDate start, LocalDate end) {
+
+	}
+
+	/**
+	 * Gives a strategy the chance to allocate a flight itself, for example by
+	 * copying an allocation it already knows to be good. Allocates nothing here.
+	 * A strategy that is rejected part way through a flight must call
+	 * discardCandidate(), as the half allocation cannot be undone
+	 * 
+	 * @param schedule the candidate being built
+	 * @param flight   the flight about to be allocated
+	 * @return true if the flight has been fully allocated and completed
+	 */
+	protected boolean reuseAllocation(Schedule schedule, FlightInfo flight) {
+		return false;
+	}
+
+	/**
+	 * Drops the candidate being built, without scoring it, because one of its
+	 * flights was left half allocated
+	 */
+	protected void discardCandidate() {
+		candidateDiscarded = true;
+	}
+
+	/**
+	 * Chooses which of the aircraft waiting at the departure airport to try next
+	 * for a flight. Picks at random here
+	 * 
+	 * @param candidates       the aircraft at the departure airport not yet tried
+	 * @param flight           the flight to allocate
+	 * @param passengerNumbers the passenger forecasts
+	 * @return one of the candidates
+	 */
+	protected Aircraft pickAircraft(List<Aircraft> candidates, FlightInfo flight,
+			IPassengerNumbersDAO passengerNumbers) {
+		return candidates.get(r.nextInt(candidates.size()));
+	}
+
+	/**
+	 * Chooses a free aircraft for a flight, trying those waiting at the departure
+	 * airport first and then every aircraft once, from a random starting point
+	 * 
+	 * @return the aircraft, or null if none is free
+	 */
+	private Aircraft chooseAircraft(Schedule schedule, FlightInfo flight, HashMap<Aircraft, String> aircraftsLocation,
+			List<Aircraft> allAircrafts, IPassengerNumbersDAO passengerNumbers) {
+		List<Aircraft> aircrafts = new ArrayList<>();
+		for (Aircraft key : aircraftsLocation.keySet()) {
+			if (aircraftsLocation.get(key).equals(flight.getFlight().getDepartureAirportCode())) {
+				aircrafts.add(key);
+			}
+		}
+		while (!aircrafts.isEmpty()) {
+			Aircraft aircraft = pickAircraft(aircrafts, flight, passengerNumbers);
+			if (!schedule.hasConflict(aircraft, flight)) {
+				return aircraft;
+			}
+			aircrafts.remove(aircraft);
+		}
+
+		int offset = allAircrafts.isEmpty() ? 0 : r.nextInt(allAircrafts.size());
+		for (int i = 0; i < allAircrafts.size(); i++) {
+			Aircraft aircraft = allAircrafts.get((offset + i) % allAircrafts.size());
+			if (!schedule.hasConflict(aircraft, flight)) {
+				return aircraft;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Chooses the cabin crew for a flight into chosenCabinCrew. Crew at the
+	 * departure airport with hours to spare are tried first, then any crew rated
+	 * for the aircraft, both at random, and finally every cabin crew member once
+	 * 
+	 * @return true if enough free cabin crew were found
+	 */
+	private boolean chooseCabinCrew(Schedule schedule, FlightInfo flight, Aircraft aircraft, ICrewDAO crewDAO,
+			CrewStateTracker tracker) {
+		int required = aircraft.getCabinCrewRequired();
+		pickCabinCrew(schedule, flight, tracker.cabinCrewFor(flight, aircraft.getTypeCode()), required);
+		if (chosenCabinCrew.size() < required) {
+			pickCabinCrew(schedule, flight, crewDAO.findCabinCrewByTypeRating(aircraft.getTypeCode()), required);
+		}
+
+		if (chosenCabinCrew.size() == required) {
+			return true;
+		}
+
+		List<CabinCrew> all = crewDAO.getAllCabinCrew();
+		int offset = all.isEmpty() ? 0 : r.nextInt(all.size());
+		for (int i = 0; i < all.size() && chosenCabinCrew.size() < required; i++) {
+			CabinCrew crew = all.get((offset + i) % all.size());
+			if (!schedule.hasConflict(crew, flight) && !chosenCabinCrew.contains(crew)) {
+				chosenCabinCrew.add(crew);
+			}
+		}
+		return chosenCabinCrew.size() == required;
+	}
+
+	private void pickCabinCrew(Schedule schedule, FlightInfo flight, List<CabinCrew> candidates, int required) {
+		while (chosenCabinCrew.size() < required && !candidates.isEmpty()) {
+			CabinCrew crew = candidates.remove(r.nextInt(candidates.size()));
+			if (!schedule.hasConflict(crew, flight) && !chosenCabinCrew.contains(crew)) {
+				chosenCabinCrew.add(crew);
+			}
+		}
+	}
+
+	/**
+	 * Chooses a pilot of the given rank for a flight. Pilots at the departure
+	 * airport with hours to spare are tried first, then any pilot rated for the
+	 * aircraft, both at random, and finally every pilot once whatever their rank
+	 * 
+	 * @param exclude a pilot already on the flight, or null
+	 * @return the pilot, or null if none is free
+	 */
+	private Pilot choosePilot(Schedule schedule, FlightInfo flight, Aircraft aircraft, ICrewDAO crewDAO,
+			CrewStateTracker tracker, Pilot.Rank rank, Pilot exclude) {
+		List<Pilot> local = rank == Pilot.Rank.CAPTAIN ? tracker.captainsFor(flight, aircraft.getTypeCode())
+				: tracker.firstOfficersFor(flight, aircraft.getTypeCode());
+		Pilot pilot = pickPilot(schedule, flight, local, rank, exclude);
+		if (pilot == null) {
+			pilot = pickPilot(schedule, flight, crewDAO.findPilotsByTypeRating(aircraft.getTypeCode()), rank,
+					exclude);
+		}
+		if (pilot != null) {
+			return pilot;
+		}
+
+		List<Pilot> all = crewDAO.getAllPilots();
+		int offset = all.isEmpty() ? 0 : r.nextInt(all.size());
+		for (int i = 0; i < all.size(); i++) {
+			pilot = all.get((offset + i) % all.size());
+			if (!schedule.hasConflict(pilot, flight) && !pilot.equals(exclude)) {
+				return pilot;
+			}
+		}
+		return null;
+	}
+
+	private Pilot pickPilot(Schedule schedule, FlightInfo flight, List<Pilot> candidates, Pilot.Rank rank,
+			Pilot exclude) {
+		while (!candidates.isEmpty()) {
+			Pilot pilot = candidates.remove(r.nextInt(candidates.size()));
+			if (!schedule.hasConflict(pilot, flight) && !pilot.equals(exclude) && pilot.getRank() == rank) {
+				return pilot;
+			}
+		}
+		return null;
+	}
+
+	private List<Crew> crewOf(Schedule schedule, FlightInfo flight) {
+		List<Crew> crew = new ArrayList<Crew>(schedule.getCabinCrewOf(flight));
+		crew.add(schedule.getCaptainOf(flight));
+		crew.add(schedule.getFirstOfficerOf(flight));
+		return crew;
+	}
+
+	/**
+	 * Returns the penalty a completed flight is certain to add to the quality
+	 * score: passengers forecast beyond the seats of the aircraft, and crew hours
+	 * pushed over the monthly limit. The weights are kept at or below those of
+	 * the quality score calculator so the running total stays a lower bound
+	 * 
+	 * @param flight           the flight that has just been allocated
+	 * @param aircraft         the aircraft allocated to the flight
+	 * @param crew             every crew member allocated to the flight
+	 * @param passengerNumbers the passenger forecasts
+	 * @param tracker          the crew's state, already updated with this flight
+	 * @return the penalty this flight adds to the lower bound
+	 */
+	private long partialPenalty(FlightInfo flight, Aircraft aircraft, List<Crew> crew,
+			IPassengerNumbersDAO passengerNumbers, CrewStateTracker tracker) {
+		long penalty = 0;
+		LocalDateTime departure = flight.getDepartureDateTime();
+		int passengers = passengerNumbers.getPassengerNumbersFor(flight.getFlight().getFlightNumber(),
+				departure.toLocalDate());
+		if (passengers > aircraft.getSeats()) {
+			penalty += (passengers - aircraft.getSeats()) * OVERFLOW_POINTS_PER_PASSENGER;
+		}
+
+		long duration = flight.getFlight().getDuration().toMinutes();
+		for (Crew c : crew) {
+			long after = tracker.minutesWorked(c, flight);
+			long before = after - duration;
+			long hoursOverBefore = Math.max(0, before - MONTHLY_LIMIT_MINUTES) / 60;
+			long hoursOverAfter = Math.max(0, after - MONTHLY_LIMIT_MINUTES) / 60;
+			penalty += (hoursOverAfter - hoursOverBefore) * OVERTIME_POINTS_PER_HOUR;
+		}
+		return penalty;
+	}
+
 	@Override
 	public void setSchedulerRunner(SchedulerRunner arg0) {
 
@@ -171,6 +598,6 @@ public class Scheduler implements IScheduler {
 
 	@Override
 	public void stop() {
-
+		stopped = true;
 	}
 }
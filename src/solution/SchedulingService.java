@@ -0,0 +1,334 @@
+package solution;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import baseclasses.DataLoadingException;
+import baseclasses.Schedule;
+
+/**
+ * The SchedulingService is a long-running scheduler shared by several planners.
+ * It loads the data files once, and answers schedule requests for a date range
+ * and seed. Identical requests arriving while one is being computed share that
+ * single computation, and completed schedules are kept in a small LRU cache
+ * keyed by the data version and the request, so repeated requests are answered
+ * at once. The data version is a hash of the data files' contents, so a
+ * refresh() after the files change stops old results being served. If the
+ * files cannot be loaded consistently, no cached results are served until a
+ * refresh succeeds.
+ * 
+ * The service can be used in-process through schedule(), or over HTTP on
+ * localhost with GET /schedule?start=2020-07-04&amp;end=2020-07-08&amp;seed=1,
+ * which answers with the schedule as CSV and its score in the X-Score header
+ */
+public class SchedulingService {
+
+	/**
+	 * A completed schedule and its quality score
+	 */
+	public static class Result {
+		private final Schedule schedule;
+		private final long score;
+
+		Result(Schedule schedule, long score) {
+			this.schedule = schedule;
+			this.score = score;
+		}
+
+		public Schedule getSchedule() {
+			return schedule;
+		}
+
+		public long getScore() {
+			return score;
+		}
+	}
+
+	private final Path aircraftFile;
+	private final Path crewFile;
+	private final Path routeFile;
+	private final Path passengerNumbersFile;
+	private final AircraftDAO aircraft = new AircraftDAO();
+	private final CrewDAO crew = new CrewDAO();
+	private final RouteDAO routes = new RouteDAO();
+	private final PassengerNumbersDAO passengerNumbers = new PassengerNumbersDAO();
+	private final long timeBudget;
+	private final ExecutorService executor;
+	private final HashMap<String, CompletableFuture<Result>> inFlight = new HashMap<>();
+	private final LinkedHashMap<String, Result> cache;
+	// null while the loaded data is not known to match one version of the files
+	private volatile String dataVersion;
+	private volatile ScheduleWriter writer;
+	// held while the files are re-read, so refreshes run one at a time without
+	// holding up requests
+	private final Object refreshing = new Object();
+	private HttpServer server;
+
+	/**
+	 * Creates a service and loads its data
+	 * 
+	 * @param aircraftFile         the aircraft CSV file
+	 * @param crewFile             the crew JSON file
+	 * @param routeFile            the route XML file
+	 * @param passengerNumbersFile the passenger numbers SQLite database
+	 * @param timeBudget           how long to search for each schedule, in
+	 *                             milliseconds
+	 * @param threads              the number of schedules to compute at once
+	 * @param cacheSize            the number of completed schedules to keep
+	 * @throws DataLoadingException if the data cannot be loaded
+	 */
+	public SchedulingService(Path aircraftFile, Path crewFile, Path routeFile, Path passengerNumbersFile,
+			long timeBudget, int threads, final int cacheSize) throws DataLoadingException {
+		this.aircraftFile = aircraftFile;
+		this.crewFile = crewFile;
+		this.routeFile = routeFile;
+		this.passengerNumbersFile = passengerNumbersFile;
+		this.timeBudget = timeBudget;
+		this.executor = Executors.newFixedThreadPool(threads);
+		this.cache = new LinkedHashMap<String, Result>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Result> eldest) {
+				return size() > cacheSize;
+			}
+		};
+
+		String before = fingerprint();
+		aircraft.loadAircraftData(aircraftFile);
+		crew.loadCrewData(crewFile);
+		routes.loadRouteData(routeFile);
+		passengerNumbers.loadPassengerNumbersData(passengerNumbersFile);
+		loaded(before);
+	}
+
+	/**
+	 * Re-reads the data files, applying only what changed in them. Requests
+	 * made afterwards are keyed by the new data version. If any file cannot be
+	 * read, or the files change while being read, the loaded data may mix old
+	 * and new files, so cached results stop being served until a later refresh
+	 * succeeds. The files are read without holding the service's lock, so
+	 * requests keep being answered meanwhile
+	 * 
+	 * @throws DataLoadingException if the data cannot be reloaded
+	 */
+	public void refresh() throws DataLoadingException {
+		synchronized (refreshing) {
+			synchronized (this) {
+				dataVersion = null;
+			}
+			String before = fingerprint();
+			aircraft.refreshAircraftData(aircraftFile);
+			crew.refreshCrewData(crewFile);
+			routes.refreshRouteData(routeFile);
+			passengerNumbers.refreshPassengerNumbersData(passengerNumbersFile);
+			loaded(before);
+		}
+	}
+
+	/**
+	 * Publishes the version of the data just loaded, provided the files did not
+	 * change while they were being read. Only the swap itself holds the
+	 * service's lock
+	 */
+	private void loaded(String before) throws DataLoadingException {
+		String after = fingerprint();
+		if (!after.equals(before)) {
+			throw new DataLoadingException(new IOException("The data files changed while they were being loaded"));
+		}
+		ScheduleWriter loadedWriter = new ScheduleWriter(aircraft, crew);
+		synchronized (this) {
+			writer = loadedWriter;
+			dataVersion = after;
+		}
+	}
+
+	private String fingerprint() throws DataLoadingException {
+		try {
+			return DatasetFingerprint.of(aircraftFile, crewFile, routeFile, passengerNumbersFile);
+		} catch (IOException e) {
+			throw new DataLoadingException(e);
+		}
+	}
+
+	/**
+	 * Requests a schedule. The result comes from the cache if the same request
+	 * has been answered for the current data, or is shared with an identical
+	 * request already being computed, or is computed afresh. While the data
+	 * version is unknown every request is computed afresh and nothing is cached
+	 * 
+	 * @param start the first date to schedule
+	 * @param end   the last date to schedule
+	 * @param seed  the seed for the scheduler's random choices
+	 * @return the result, once available
+	 */
+	public synchronized CompletableFuture<Result> schedule(final LocalDate start, final LocalDate end,
+			final long seed) {
+		final String version = dataVersion;
+		final String key = version == null ? null
+				: version + "," + start + "," + end + "," + seed + "," + timeBudget;
+		if (key != null) {
+			Result cached = cache.get(key);
+			if (cached != null) {
+				return CompletableFuture.completedFuture(cached);
+			}
+			CompletableFuture<Result> running = inFlight.get(key);
+			if (running != null) {
+				return running;
+			}
+		}
+
+		final CompletableFuture<Result> future = new CompletableFuture<>();
+		if (key != null) {
+			inFlight.put(key, future);
+		}
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Scheduler scheduler = new Scheduler();
+					scheduler.setSeed(seed);
+					scheduler.setTimeBudget(timeBudget);
+					scheduler.setVerbose(false);
+					Schedule schedule = scheduler.generateSchedule(aircraft, crew, routes, passengerNumbers, start,
+							end);
+					Result result = new Result(schedule, scheduler.getBestSchedulePoints());
+					synchronized (SchedulingService.this) {
+						// only cache if the data was not refreshed while scheduling
+						if (key != null && version.equals(dataVersion)) {
+							cache.put(key, result);
+						}
+						inFlight.remove(key);
+					}
+					future.complete(result);
+				} catch (Exception e) {
+					synchronized (SchedulingService.this) {
+						inFlight.remove(key);
+					}
+					future.completeExceptionally(e);
+				}
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Starts answering requests over HTTP on the loopback interface
+	 * 
+	 * @param port the port to listen on
+	 * @throws IOException if the port cannot be opened
+	 */
+	public synchronized void startHttp(int port) throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/schedule", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					LocalDate start;
+					LocalDate end;
+					long seed;
+					try {
+						Map<String, String> query = parseQuery(exchange.getRequestURI());
+						start = LocalDate.parse(query.get("start"));
+						end = LocalDate.parse(query.get("end"));
+						seed = query.containsKey("seed") ? Long.parseLong(query.get("seed")) : 0;
+					} catch (RuntimeException e) {
+						respond(exchange, 400, "Expected /schedule?start=yyyy-mm-dd&end=yyyy-mm-dd&seed=n");
+						return;
+					}
+					if (end.isBefore(start)) {
+						respond(exchange, 400, "The end date is before the start date");
+						return;
+					}
+
+					Result result;
+					try {
+						result = schedule(start, end, seed).get();
+					} catch (Exception e) {
+						respond(exchange, 500, "Could not schedule: " + e);
+						return;
+					}
+					if (result.getSchedule() == null) {
+						respond(exchange, 503, "No schedule was found within the time budget");
+						return;
+					}
+
+					// headers go out only once there is a schedule to stream
+					exchange.getResponseHeaders().add("Content-Type", "text/csv");
+					exchange.getResponseHeaders().add("X-Score", String.valueOf(result.getScore()));
+					exchange.sendResponseHeaders(200, 0);
+					writer.writeCsv(result.getSchedule(), Channels.newChannel(exchange.getResponseBody()));
+				} finally {
+					exchange.close();
+				}
+			}
+		});
+		// connections wait on their schedule, so each gets its own thread
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.start();
+	}
+
+	private static void respond(HttpExchange exchange, int status, String message) throws IOException {
+		byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+		exchange.sendResponseHeaders(status, body.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(body);
+	}
+
+	private static Map<String, String> parseQuery(URI uri) {
+		Map<String, String> query = new HashMap<>();
+		if (uri.getRawQuery() != null) {
+			for (String pair : uri.getRawQuery().split("&")) {
+				String[] parts = pair.split("=", 2);
+				query.put(parts[0], parts.length > 1 ? parts[1] : "");
+			}
+		}
+		return query;
+	}
+
+	/**
+	 * Stops the HTTP endpoint and the computation threads
+	 */
+	public synchronized void shutdown() {
+		if (server != null) {
+			server.stop(0);
+		}
+		executor.shutdown();
+	}
+
+	/**
+	 * Runs the service until the process is stopped
+	 * 
+	 * @param args the aircraft, crew, route and passenger numbers files, the port
+	 *             and the search time per schedule in seconds
+	 */
+	public static void main(String[] args) {
+		try {
+			SchedulingService service = new SchedulingService(Paths.get(args[0]), Paths.get(args[1]),
+					Paths.get(args[2]), Paths.get(args[3]), Long.parseLong(args[5]) * 1000,
+					Runtime.getRuntime().availableProcessors(), 32);
+			service.startHttp(Integer.parseInt(args[4]));
+			System.out.println("Scheduling service listening on localhost:" + args[4]);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,207 @@
+package solution;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import baseclasses.Aircraft;
+import baseclasses.CabinCrew;
+import baseclasses.FlightInfo;
+import baseclasses.Pilot;
+
+/**
+ * The ScoreCache remembers the quality scores of candidates already scored, so
+ * that a candidate matching one seen before is not scored again. While a
+ * candidate is built, each day's allocations are folded into a rolling hash for
+ * that day, and the list of day hashes is the candidate's key. A search that
+ * rebuilds only a few days at a time therefore only changes the hashes of those
+ * days, and a candidate whose rebuilt days come out the same as before is
+ * answered from the cache.
+ * 
+ * Whole-candidate scores are cached rather than per-day ones, because terms
+ * like monthly working hours and rest after landing cross day boundaries. The
+ * most recently used scores are kept, up to the capacity given, and survive
+ * from one search to the next as long as the dates and data stay the same.
+ * Aircraft and crew are told apart by object, so a record a DAO replaces on
+ * refresh never matches its old version
+ */
+class ScoreCache {
+	private static final long PRIME = 0x100000001b3L;
+
+	private final int capacity;
+	private final LinkedHashMap<Key, Long> scores;
+	// dense ids for the aircraft and crew seen, so no two ever hash alike
+	private final IdentityHashMap<Object, Integer> ids = new IdentityHashMap<>();
+	private LocalDate start;
+	private LocalDate end;
+	private Object[] scope;
+	private long[] days = new long[0];
+	private int hits = 0;
+
+	private static class Key {
+		private final long[] days;
+		private final int hash;
+
+		Key(long[] days) {
+			this.days = days;
+			this.hash = Arrays.hashCode(days);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Key && Arrays.equals(days, ((Key) o).days);
+		}
+	}
+
+	/**
+	 * Creates an empty cache
+	 * 
+	 * @param capacity the most scores to keep
+	 */
+	ScoreCache(final int capacity) {
+		this.capacity = capacity;
+		this.scores = new LinkedHashMap<Key, Long>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Long> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Prepares the cache for a search, forgetting every score if the dates or
+	 * the data differ from the last search
+	 * 
+	 * @param start the first date being scheduled
+	 * @param end   the last date being scheduled
+	 * @param scope the DAOs and anything else that identifies the data
+	 */
+	void use(LocalDate start, LocalDate end, Object... scope) {
+		if (!start.equals(this.start) || !end.equals(this.end) || !Arrays.equals(scope, this.scope)) {
+			clear();
+			this.start = start;
+			this.end = end;
+			this.scope = scope;
+		}
+		hits = 0;
+	}
+
+	/**
+	 * Forgets every score
+	 */
+	void clear() {
+		scores.clear();
+		ids.clear();
+		scope = null;
+	}
+
+	/**
+	 * Checks whether the cache remembers anything, so callers can skip
+	 * fingerprinting when it does not
+	 * 
+	 * @return true if the cache has room for scores
+	 */
+	boolean enabled() {
+		return capacity > 0;
+	}
+
+	/**
+	 * Starts fingerprinting a new candidate over the dates given to use()
+	 */
+	void begin() {
+		int length = (int) ChronoUnit.DAYS.between(start, end) + 1;
+		if (days.length != length) {
+			days = new long[length];
+		} else {
+			Arrays.fill(days, 0);
+		}
+	}
+
+	/**
+	 * Adds a completed flight to the hash of the day it departs on
+	 * 
+	 * @param flight       the flight
+	 * @param aircraft     the aircraft allocated to it
+	 * @param captain      the captain allocated to it
+	 * @param firstOfficer the first officer allocated to it
+	 * @param cabinCrew    the cabin crew allocated to it
+	 */
+	void add(FlightInfo flight, Aircraft aircraft, Pilot captain, Pilot firstOfficer, List<CabinCrew> cabinCrew) {
+		int day = (int) ChronoUnit.DAYS.between(start, flight.getDepartureDateTime().toLocalDate());
+		day = Math.max(0, Math.min(days.length - 1, day));
+
+		long h = mix(flight.getFlight().getFlightNumber());
+		h = h * PRIME + mix(idOf(aircraft));
+		// the pilots keep their positions, so swapping them changes the hash
+		h = h * PRIME + mix(idOf(captain));
+		h = h * PRIME + mix(idOf(firstOfficer));
+		// cabin crew are summed, as the order they come back in is not fixed
+		long cabinCrewHash = 0;
+		for (CabinCrew c : cabinCrew) {
+			cabinCrewHash += mix(idOf(c));
+		}
+		h = h * PRIME + cabinCrewHash;
+		days[day] = days[day] * PRIME + mix(h);
+	}
+
+	/**
+	 * Returns the score of a candidate with the same fingerprint as the one just
+	 * built, if one has been scored
+	 * 
+	 * @return the score, or null if the candidate has not been seen
+	 */
+	Long lookup() {
+		if (capacity == 0) {
+			return null;
+		}
+		Long score = scores.get(new Key(days));
+		if (score != null) {
+			hits++;
+		}
+		return score;
+	}
+
+	/**
+	 * Remembers the score of the candidate just built
+	 * 
+	 * @param score its quality score
+	 */
+	void store(long score) {
+		if (capacity > 0) {
+			scores.put(new Key(days.clone()), score);
+		}
+	}
+
+	int getHits() {
+		return hits;
+	}
+
+	private long idOf(Object record) {
+		Integer id = ids.get(record);
+		if (id == null) {
+			id = ids.size() + 1;
+			ids.put(record, id);
+		}
+		return id;
+	}
+
+	private static long mix(long x) {
+		x ^= x >>> 33;
+		x *= 0xff51afd7ed558ccdL;
+		x ^= x >>> 33;
+		x *= 0xc4ceb9fe1a85ec53L;
+		x ^= x >>> 33;
+		return x;
+	}
+}
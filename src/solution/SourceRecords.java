@@ -0,0 +1,136 @@
+package solution;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * SourceRecords remembers which records each DAO loaded from which file, so that
+ * when a file changes only the records that actually changed in it are
+ * replaced, and unchanged records keep their objects. Working out the new
+ * records still takes one pass over everything loaded, and the DAO still
+ * publishes a new copy of its data, so the cost of a refresh grows with the
+ * amount of data loaded rather than with the size of the change. Subclasses say
+ * how a record is identified and when two versions of a record are the same
+ *
+ * @param <T> the type of record loaded from the files
+ */
+abstract class SourceRecords<T> {
+	// the records loaded from each file, compared by identity
+	private HashMap<Path, Set<T>> recordsBySource = new HashMap<>();
+
+	/**
+	 * Returns the key identifying a record across versions of a file
+	 * 
+	 * @param record the record to identify
+	 * @return the record's key
+	 */
+	abstract String keyOf(T record);
+
+	/**
+	 * Checks whether two versions of the same record have identical details
+	 * 
+	 * @param a the currently loaded version
+	 * @param b the newly read version
+	 * @return true if nothing about the record changed
+	 */
+	abstract boolean sameDetails(T a, T b);
+
+	/**
+	 * Returns the path a file is remembered by, so that the same file given
+	 * relative and absolute paths is recognised as one file
+	 * 
+	 * @param p the path given to a DAO
+	 * @return the absolute, normalised path
+	 */
+	static Path sourceOf(Path p) {
+		return p.toAbsolutePath().normalize();
+	}
+
+	/**
+	 * Records that the given records were loaded from the given file
+	 * 
+	 * @param p      the file the records were read from
+	 * @param parsed the records read
+	 */
+	void loaded(Path p, List<T> parsed) {
+		Path source = sourceOf(p);
+		Set<T> records = recordsBySource.get(source);
+		if (records == null) {
+			records = Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+			recordsBySource.put(source, records);
+		}
+		records.addAll(parsed);
+	}
+
+	/**
+	 * Works out the records that should be loaded once a file has been re-read.
+	 * Records from other files, and records whose details did not change, are
+	 * carried over as the same objects; records gone from the file are dropped;
+	 * changed and new records are taken from the re-read file. Records sharing a
+	 * key are matched up in file order. A file loaded more than once is brought
+	 * back to a single copy of its records, the extra copies counting as removed
+	 * 
+	 * @param p         the file that was re-read
+	 * @param current   the currently loaded records
+	 * @param parsed    the records now in the file
+	 * @param refreshed the list to fill with the records to load from now on
+	 * @return the number of records added, removed or replaced
+	 */
+	int refresh(Path p, List<T> current, List<T> parsed, List<T> refreshed) {
+		Path source = sourceOf(p);
+		Set<T> previous = recordsBySource.containsKey(source) ? recordsBySource.get(source)
+				: Collections.<T>emptySet();
+		LinkedHashMap<String, ArrayDeque<T>> fresh = new LinkedHashMap<>();
+		for (T record : parsed) {
+			String key = keyOf(record);
+			if (!fresh.containsKey(key)) {
+				fresh.put(key, new ArrayDeque<T>());
+			}
+			fresh.get(key).add(record);
+		}
+
+		Set<T> kept = Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+		int changes = 0;
+		for (T record : current) {
+			if (!previous.contains(record)) {
+				refreshed.add(record);
+				continue;
+			}
+			ArrayDeque<T> matches = fresh.get(keyOf(record));
+			if (matches == null || matches.isEmpty()) {
+				changes++;
+				continue;
+			}
+			T updated = matches.poll();
+			if (sameDetails(record, updated)) {
+				refreshed.add(record);
+				kept.add(record);
+			} else {
+				refreshed.add(updated);
+				kept.add(updated);
+				changes++;
+			}
+		}
+		for (ArrayDeque<T> added : fresh.values()) {
+			refreshed.addAll(added);
+			kept.addAll(added);
+			changes += added.size();
+		}
+
+		recordsBySource.put(source, kept);
+		return changes;
+	}
+
+	/**
+	 * Forgets every file loaded so far
+	 */
+	void reset() {
+		recordsBySource.clear();
+	}
+}
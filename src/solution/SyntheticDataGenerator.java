@@ -0,0 +1,211 @@
+package solution;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.TextStyle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * The SyntheticDataGenerator writes aircraft, crew, route and passenger number
+ * files in the same formats the DAOs load, at any scale. The same seed and
+ * sizes always produce the same files, so benchmark runs can be compared
+ */
+public class SyntheticDataGenerator {
+	private static final String[] DAYS = { "Mon", "Tue", "Wed", "Thu", "Fri", "Sat", "Sun" };
+	private static final String[] TYPES = { "A319", "A320", "A321", "B737", "B757", "B787" };
+	private static final int[] SEATS = { 144, 180, 220, 189, 235, 290 };
+
+	private final Random random;
+	private final int airports;
+
+	/**
+	 * Creates a generator
+	 * 
+	 * @param seed     the seed all generated data is derived from
+	 * @param airports the number of airports to fly between
+	 */
+	public SyntheticDataGenerator(long seed, int airports) {
+		this.random = new Random(seed);
+		this.airports = airports;
+	}
+
+	/**
+	 * Writes an aircraft CSV file
+	 * 
+	 * @param p     the file to write
+	 * @param tails the number of aircraft
+	 * @throws IOException if the file cannot be written
+	 */
+	public void writeAircraft(Path p, int tails) throws IOException {
+		BufferedWriter writer = Files.newBufferedWriter(p);
+		try {
+			writer.write("Tailcode,Model,Type,Manufacturer,StartingPosition,Seats,CabinCrewRequired");
+			writer.newLine();
+			for (int i = 0; i < tails; i++) {
+				int type = random.nextInt(TYPES.length);
+				String manufacturer = TYPES[type].startsWith("A") ? "Airbus" : "Boeing";
+				writer.write("G-" + code(i, 4) + "," + TYPES[type] + "-" + (100 + type) + "," + TYPES[type] + ","
+						+ manufacturer + "," + airport(random.nextInt(airports)) + "," + SEATS[type] + ","
+						+ (SEATS[type] / 50 + 1));
+				writer.newLine();
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Writes a crew JSON file, a third of the crew being pilots split evenly
+	 * between captains and first officers
+	 * 
+	 * @param p    the file to write
+	 * @param crew the number of crew
+	 * @throws IOException if the file cannot be written
+	 */
+	public void writeCrew(Path p, int crew) throws IOException {
+		int pilots = crew / 3;
+		BufferedWriter writer = Files.newBufferedWriter(p);
+		try {
+			writer.write("{\"pilots\":[");
+			for (int i = 0; i < pilots; i++) {
+				writer.write(i == 0 ? "" : ",");
+				writer.write(crewMember("Pilot", i, i % 2 == 0 ? "CAPTAIN" : "FIRST_OFFICER"));
+				writer.newLine();
+			}
+			writer.write("],\"cabincrew\":[");
+			for (int i = 0; i < crew - pilots; i++) {
+				writer.write(i == 0 ? "" : ",");
+				writer.write(crewMember("Cabin", i, null));
+				writer.newLine();
+			}
+			writer.write("]}");
+		} finally {
+			writer.close();
+		}
+	}
+
+	private String crewMember(String forename, int i, String rank) {
+		StringBuilder json = new StringBuilder();
+		json.append("{\"forename\":\"").append(forename).append("\",\"surname\":\"").append(code(i, 5));
+		json.append("\",\"home_airport\":\"").append(airport(random.nextInt(airports))).append('"');
+		if (rank != null) {
+			json.append(",\"rank\":\"").append(rank).append('"');
+		}
+		// everyone is rated for two neighbouring types
+		int type = random.nextInt(TYPES.length);
+		json.append(",\"type_ratings\":[\"").append(TYPES[type]).append("\",\"")
+				.append(TYPES[(type + 1) % TYPES.length]).append("\"]}");
+		return json.toString();
+	}
+
+	/**
+	 * Writes a route XML file with the given number of flights a week, spread
+	 * evenly over the days of the week
+	 * 
+	 * @param p      the file to write
+	 * @param routes the number of routes a week
+	 * @return the day of the week each route flies on, indexed by route
+	 * @throws IOException if the file cannot be written
+	 */
+	public List<String> writeRoutes(Path p, int routes) throws IOException {
+		List<String> flightDays = new ArrayList<>();
+		BufferedWriter writer = Files.newBufferedWriter(p);
+		try {
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+			writer.newLine();
+			writer.write("<Routes>");
+			writer.newLine();
+			for (int i = 0; i < routes; i++) {
+				String day = DAYS[i % DAYS.length];
+				int from = random.nextInt(airports);
+				int to = (from + 1 + random.nextInt(Math.max(1, airports - 1))) % airports;
+				LocalTime departure = LocalTime.of(5 + random.nextInt(16), random.nextInt(12) * 5);
+				Duration duration = Duration.ofMinutes(45 + random.nextInt(48) * 5);
+				writer.write("<Route><FlightNumber>" + (i + 1) + "</FlightNumber><DayOfWeek>" + day
+						+ "</DayOfWeek><DepartureTime>" + departure + "</DepartureTime><DepartureAirport>Airport "
+						+ airport(from) + "</DepartureAirport><DepartureAirportIATACode>" + airport(from)
+						+ "</DepartureAirportIATACode><ArrivalTime>" + departure.plus(duration)
+						+ "</ArrivalTime><ArrivalAirport>Airport " + airport(to)
+						+ "</ArrivalAirport><ArrivalAirportIATACode>" + airport(to)
+						+ "</ArrivalAirportIATACode><Duration>" + duration + "</Duration></Route>");
+				writer.newLine();
+				flightDays.add(day);
+			}
+			writer.write("</Routes>");
+			writer.newLine();
+		} finally {
+			writer.close();
+		}
+		return flightDays;
+	}
+
+	/**
+	 * Writes a passenger numbers SQLite database with a forecast for every flight
+	 * on every date in a range
+	 * 
+	 * @param p          the database to write
+	 * @param flightDays the day each flight number operates on, as returned by
+	 *                   writeRoutes(); flight numbers start at 1
+	 * @param start      the first date to forecast
+	 * @param end        the last date to forecast
+	 * @throws SQLException if the database cannot be written
+	 * @throws IOException  if an old database cannot be removed
+	 */
+	public void writePassengerNumbers(Path p, List<String> flightDays, LocalDate start, LocalDate end)
+			throws SQLException, IOException {
+		Files.deleteIfExists(p);
+		Connection connection = DriverManager.getConnection("jdbc:sqlite:" + p.toString());
+		try {
+			connection.setAutoCommit(false);
+			Statement s = connection.createStatement();
+			s.executeUpdate("CREATE TABLE PassengerNumbers (Date TEXT, FlightNumber INTEGER, LoadEstimate INTEGER);");
+			s.close();
+			PreparedStatement insert = connection.prepareStatement("INSERT INTO PassengerNumbers VALUES (?, ?, ?);");
+			for (LocalDate date = start; !date.isAfter(end); date = date.plusDays(1)) {
+				String day = date.getDayOfWeek().getDisplayName(TextStyle.SHORT, Locale.UK);
+				for (int i = 0; i < flightDays.size(); i++) {
+					if (flightDays.get(i).equals(day)) {
+						insert.setString(1, date.toString());
+						insert.setInt(2, i + 1);
+						insert.setInt(3, 80 + random.nextInt(220));
+						insert.addBatch();
+					}
+				}
+				insert.executeBatch();
+			}
+			insert.close();
+			connection.commit();
+		} finally {
+			connection.close();
+		}
+	}
+
+	private String airport(int i) {
+		return code(i, 3);
+	}
+
+	/**
+	 * Returns a fixed-length code of capital letters for a number
+	 */
+	private static String code(int i, int length) {
+		char[] letters = new char[length];
+		for (int k = length - 1; k >= 0; k--) {
+			letters[k] = (char) ('A' + i % 26);
+			i /= 26;
+		}
+		return new String(letters);
+	}
+}
@@ -0,0 +1,10 @@
+/**
+ * The flight scheduler: the DAOs that load the airline's data, and the
+ * schedulers that allocate aircraft and crew to its flights.
+ * 
+ * Every DAO keeps its data in an immutable snapshot behind a volatile field.
+ * Loads, refreshes and resets build a new snapshot off to the side and swap it
+ * in as a whole, so schedulers reading on other threads never block and never
+ * see a half-loaded file
+ */
+package solution;